@@ -1,7 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ page
-	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
+	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,com.shashi.utility.StringIntMap,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -63,13 +63,18 @@
 
 					<%
 					ProductServiceImpl productDao = new ProductServiceImpl();
-					List<ProductBean> products = new ArrayList<ProductBean>();
-					products = productDao.getAllProducts();
+					String cursor = request.getParameter("cursor");
+					PageBean<ProductBean> productPage = productDao.getProductsPage(cursor, ProductServiceImpl.PAGE_SIZE);
+					List<ProductBean> products = productPage.getItems();
+					List<String> prodIds = new ArrayList<String>();
+					for (ProductBean product : products)
+						prodIds.add(product.getProdId());
+					StringIntMap soldCounts = new OrderServiceImpl().getSoldCounts(prodIds);
 					for (ProductBean product : products) {
 					%>
 
 					<tr>
-						<td><img src="./ShowImage?pid=<%=product.getProdId()%>"
+						<td><img src="./ShowImage?pid=<%=product.getProdId()%>&size=thumb"
 							style="width: 50px; height: 50px;"></td>
 						<td><a
 							href="./updateProduct.jsp?prodid=<%=product.getProdId()%>"><%=product.getProdId()%></a></td>
@@ -80,7 +85,7 @@
 						<td><%=name%></td>
 						<td><%=product.getProdType().toUpperCase()%></td>
 						<td><%=product.getProdPrice()%></td>
-						<td><%=new OrderServiceImpl().countSoldItem(product.getProdId())%></td>
+						<td><%=soldCounts.get(product.getProdId())%></td>
 						<td><%=product.getProdQuantity()%></td>
 						<td>
 							<form method="post">
@@ -116,6 +121,22 @@
 				</tbody>
 			</table>
 		</div>
+		<div class="text-center" style="margin-bottom: 20px;">
+			<%
+			if (cursor != null) {
+			%>
+			<a href="adminStock.jsp" class="btn btn-default">First Page</a>
+			&nbsp;&nbsp;&nbsp;
+			<%
+			}
+			if (productPage.hasNext()) {
+			%>
+			<a href="adminStock.jsp?cursor=<%=productPage.getNextCursor()%>"
+				class="btn btn-default">Next Page</a>
+			<%
+			}
+			%>
+		</div>
 	</div>
 
 	<%@ include file="footer.html"%>
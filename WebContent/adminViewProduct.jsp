@@ -36,24 +36,39 @@
 
 	}
 	ProductServiceImpl prodDao = new ProductServiceImpl();
-	List<ProductBean> products = new ArrayList<ProductBean>();
+	PageBean<ProductBean> productPage = null;
 
 	String search = request.getParameter("search");
 	String type = request.getParameter("type");
+	String cursor = request.getParameter("cursor");
 	String message = "All Products";
 	if (search != null) {
-		products = prodDao.searchAllProducts(search);
+		productPage = prodDao.searchProductsPage(search, cursor, ProductServiceImpl.PAGE_SIZE);
 		message = "Showing Results for '" + search + "'";
 	} else if (type != null) {
-		products = prodDao.getAllProductsByType(type);
+		productPage = prodDao.getProductsByTypePage(type, cursor, ProductServiceImpl.PAGE_SIZE);
 		message = "Showing Results for '" + type + "'";
 	} else {
-		products = prodDao.getAllProducts();
+		productPage = prodDao.getProductsPage(cursor, ProductServiceImpl.PAGE_SIZE);
 	}
-	if (products.isEmpty()) {
+	if (productPage.getItems().isEmpty() && cursor != null && !response.containsHeader("Location")) {
+		/* stale cursor or past the last page: start the same query over,
+		unless the credential check above already redirected */
+		String firstPage = "";
+		if (search != null)
+			firstPage = "?search=" + java.net.URLEncoder.encode(search, "UTF-8");
+		else if (type != null)
+			firstPage = "?type=" + java.net.URLEncoder.encode(type, "UTF-8");
+		response.sendRedirect(request.getRequestURI() + firstPage);
+		return;
+	}
+	if (productPage.getItems().isEmpty() && (search != null || type != null)) {
 		message = "No items found for the search '" + (search != null ? search : type) + "'";
-		products = prodDao.getAllProducts();
+		search = null;
+		type = null;
+		productPage = prodDao.getProductsPage(null, ProductServiceImpl.PAGE_SIZE);
 	}
+	List<ProductBean> products = productPage.getItems();
 	%>
 
 
@@ -71,7 +86,7 @@
 			%>
 			<div class="col-sm-4" style='height: 350px;'>
 				<div class="thumbnail">
-					<img src="./ShowImage?pid=<%=product.getProdId()%>" alt="Product"
+					<img src="./ShowImage?pid=<%=product.getProdId()%>&size=medium" alt="Product"
 						style="height: 150px; max-width: 180px;">
 					<p class="productname"><%=product.getProdName()%>
 						(
@@ -103,6 +118,28 @@
 	</div>
 	<!-- ENd of Product Items List -->
 
+	<div class="text-center" style="margin-bottom: 20px;">
+		<%
+		String pageQuery = "";
+		if (search != null)
+			pageQuery = "&search=" + java.net.URLEncoder.encode(search, "UTF-8");
+		else if (type != null)
+			pageQuery = "&type=" + java.net.URLEncoder.encode(type, "UTF-8");
+		if (cursor != null) {
+		%>
+		<a href="?<%=pageQuery.isEmpty() ? "" : pageQuery.substring(1)%>"
+			class="btn btn-default">First Page</a> &nbsp;&nbsp;&nbsp;
+		<%
+		}
+		if (productPage.hasNext()) {
+		%>
+		<a href="?cursor=<%=productPage.getNextCursor()%><%=pageQuery%>"
+			class="btn btn-default">Next Page</a>
+		<%
+		}
+		%>
+	</div>
+
 	<%@ include file="footer.html"%>
 
 </body>
@@ -90,6 +90,10 @@
 				CartServiceImpl cart = new CartServiceImpl();
 				List<CartBean> cartItems = new ArrayList<CartBean>();
 				cartItems = cart.getAllCartItems(userName);
+				List<String> cartProdIds = new ArrayList<String>();
+				for (CartBean item : cartItems)
+					cartProdIds.add(item.getProdId());
+				Map<String, ProductBean> cartProducts = new ProductServiceImpl().getProductsByIds(cartProdIds);
 				double totAmount = 0;
 				for (CartBean item : cartItems) {
 
@@ -97,7 +101,10 @@
 
 					int prodQuantity = item.getQuantity();
 
-					ProductBean product = new ProductServiceImpl().getProductDetails(prodId);
+					ProductBean product = cartProducts.get(prodId);
+
+					if (product == null)
+						continue;
 
 					double currAmount = product.getProdPrice() * prodQuantity;
 
@@ -107,7 +114,7 @@
 				%>
 
 				<tr>
-					<td><img src="./ShowImage?pid=<%=product.getProdId()%>"
+					<td><img src="./ShowImage?pid=<%=product.getProdId()%>&size=thumb"
 						style="width: 50px; height: 50px;"></td>
 					<td><%=product.getProdName()%></td>
 					<td><%=product.getProdPrice()%></td>
@@ -30,7 +30,9 @@
 	}
 
 	OrderService dao = new OrderServiceImpl();
-	List<OrderDetails> orders = dao.getAllOrderDetails(userName);
+	String cursor = request.getParameter("cursor");
+	PageBean<OrderDetails> orderPage = dao.getOrderDetailsPage(userName, cursor, OrderServiceImpl.PAGE_SIZE);
+	List<OrderDetails> orders = orderPage.getItems();
 	%>
 
 
@@ -65,7 +67,7 @@
 					%>
 
 					<tr>
-						<td><img src="./ShowImage?pid=<%=order.getProductId()%>"
+						<td><img src="./ShowImage?pid=<%=order.getProductId()%>&size=thumb"
 							style="width: 50px; height: 50px;"></td>
 						<td><%=order.getProdName()%></td>
 						<td><%=order.getOrderId()%></td>
@@ -82,6 +84,22 @@
 				</tbody>
 			</table>
 		</div>
+		<div class="text-center" style="margin-bottom: 20px;">
+			<%
+			if (cursor != null) {
+			%>
+			<a href="orderDetails.jsp" class="btn btn-default">First Page</a>
+			&nbsp;&nbsp;&nbsp;
+			<%
+			}
+			if (orderPage.hasNext()) {
+			%>
+			<a href="orderDetails.jsp?cursor=<%=orderPage.getNextCursor()%>"
+				class="btn btn-default">Next Page</a>
+			<%
+			}
+			%>
+		</div>
 	</div>
 	<!-- ENd of Product Items List -->
 
@@ -58,18 +58,16 @@
 					<%
 					OrderServiceImpl orderdao = new OrderServiceImpl();
 
-					List<OrderBean> orders = new ArrayList<OrderBean>();
-					orders = orderdao.getAllOrders();
+					String cursor = request.getParameter("cursor");
+					PageBean<ShipmentBean> shipmentPage = orderdao.getShipmentsPage(true, cursor, OrderServiceImpl.PAGE_SIZE);
 					int count = 0;
-					for (OrderBean order : orders) {
+					for (ShipmentBean order : shipmentPage.getItems()) {
 						String transId = order.getTransactionId();
 						String prodId = order.getProductId();
 						int quantity = order.getQuantity();
-						int shipped = order.getShipped();
-						String userId = new TransServiceImpl().getUserId(transId);
-						String userAddr = new UserServiceImpl().getUserAddr(userId);
-						if (shipped != 0) {
-							count++;
+						String userId = order.getUserId();
+						String userAddr = order.getUserAddr();
+						count++;
 					%>
 
 					<tr>
@@ -85,7 +83,6 @@
 
 					<%
 					}
-					}
 					%>
 					<%
 					if (count == 0) {
@@ -101,6 +98,22 @@
 				</tbody>
 			</table>
 		</div>
+		<div class="text-center" style="margin-bottom: 20px;">
+			<%
+			if (cursor != null) {
+			%>
+			<a href="shippedItems.jsp" class="btn btn-default">First Page</a>
+			&nbsp;&nbsp;&nbsp;
+			<%
+			}
+			if (shipmentPage.hasNext()) {
+			%>
+			<a href="shippedItems.jsp?cursor=<%=shipmentPage.getNextCursor()%>"
+				class="btn btn-default">Next Page</a>
+			<%
+			}
+			%>
+		</div>
 	</div>
 
 	<%@ include file="footer.html"%>
@@ -42,11 +42,13 @@
 		style="color: green; font-size: 24px; font-weight: bold;">UnShipped
 		Orders</div>
 	<div class="container-fluid">
+		<form method="post" action="BulkShipmentServlet">
 		<div class="table-responsive ">
 			<table class="table table-hover table-sm">
 				<thead
 					style="background-color: #700fb7; color: white; font-size: 16px;">
 					<tr>
+						<th></th>
 						<th>TransactionId</th>
 						<th>ProductId</th>
 						<th>User Email Id</th>
@@ -61,21 +63,21 @@
 					<%
 					OrderServiceImpl orderdao = new OrderServiceImpl();
 
-					List<OrderBean> orders = new ArrayList<OrderBean>();
-					orders = orderdao.getAllOrders();
+					String cursor = request.getParameter("cursor");
+					PageBean<ShipmentBean> shipmentPage = orderdao.getShipmentsPage(false, cursor, OrderServiceImpl.PAGE_SIZE);
 					int count = 0;
-					for (OrderBean order : orders) {
+					for (ShipmentBean order : shipmentPage.getItems()) {
 						String transId = order.getTransactionId();
 						String prodId = order.getProductId();
 						int quantity = order.getQuantity();
-						int shipped = order.getShipped();
-						String userId = new TransServiceImpl().getUserId(transId);
-						String userAddr = new UserServiceImpl().getUserAddr(userId);
-						if (shipped == 0) {
-							count++;
+						String userId = order.getUserId();
+						String userAddr = order.getUserAddr();
+						count++;
 					%>
 
 					<tr>
+						<td><input type="checkbox" name="line"
+							value="<%=transId%>,<%=prodId%>"></td>
 						<td><%=transId%></td>
 						<td><a href="./updateProduct.jsp?prodid=<%=prodId%>"><%=prodId%></a></td>
 						<td><%=userId%></td>
@@ -89,13 +91,12 @@
 
 					<%
 					}
-					}
 					%>
 					<%
 					if (count == 0) {
 					%>
 					<tr style="background-color: grey; color: white;">
-						<td colspan="7" style="text-align: center;">No Items
+						<td colspan="8" style="text-align: center;">No Items
 							Available</td>
 
 					</tr>
@@ -106,6 +107,32 @@
 				</tbody>
 			</table>
 		</div>
+		<%
+		if (count > 0) {
+		%>
+		<div class="text-center" style="margin-bottom: 20px;">
+			<button type="submit" class="btn btn-success">SHIP SELECTED</button>
+		</div>
+		<%
+		}
+		%>
+		</form>
+		<div class="text-center" style="margin-bottom: 20px;">
+			<%
+			if (cursor != null) {
+			%>
+			<a href="unshippedItems.jsp" class="btn btn-default">First Page</a>
+			&nbsp;&nbsp;&nbsp;
+			<%
+			}
+			if (shipmentPage.hasNext()) {
+			%>
+			<a href="unshippedItems.jsp?cursor=<%=shipmentPage.getNextCursor()%>"
+				class="btn btn-default">Next Page</a>
+			<%
+			}
+			%>
+		</div>
 	</div>
 
 	<%@ include file="footer.html"%>
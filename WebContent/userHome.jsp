@@ -1,7 +1,7 @@
 <%@ page language="java" contentType="text/html; charset=ISO-8859-1"
 	pageEncoding="ISO-8859-1"%>
 <%@ page
-	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
+	import="com.shashi.service.impl.*, com.shashi.service.*,com.shashi.beans.*,com.shashi.utility.StringIntMap,java.util.*,javax.servlet.ServletOutputStream,java.io.*"%>
 <!DOCTYPE html>
 <html>
 <head>
@@ -29,24 +29,39 @@
 	}
 
 	ProductServiceImpl prodDao = new ProductServiceImpl();
-	List<ProductBean> products = new ArrayList<ProductBean>();
+	PageBean<ProductBean> productPage = null;
 
 	String search = request.getParameter("search");
 	String type = request.getParameter("type");
+	String cursor = request.getParameter("cursor");
 	String message = "All Products";
 	if (search != null) {
-		products = prodDao.searchAllProducts(search);
+		productPage = prodDao.searchProductsPage(search, cursor, ProductServiceImpl.PAGE_SIZE);
 		message = "Showing Results for '" + search + "'";
 	} else if (type != null) {
-		products = prodDao.getAllProductsByType(type);
+		productPage = prodDao.getProductsByTypePage(type, cursor, ProductServiceImpl.PAGE_SIZE);
 		message = "Showing Results for '" + type + "'";
 	} else {
-		products = prodDao.getAllProducts();
+		productPage = prodDao.getProductsPage(cursor, ProductServiceImpl.PAGE_SIZE);
 	}
-	if (products.isEmpty()) {
+	if (productPage.getItems().isEmpty() && cursor != null && !response.containsHeader("Location")) {
+		/* stale cursor or past the last page: start the same query over,
+		unless the credential check above already redirected */
+		String firstPage = "";
+		if (search != null)
+			firstPage = "?search=" + java.net.URLEncoder.encode(search, "UTF-8");
+		else if (type != null)
+			firstPage = "?type=" + java.net.URLEncoder.encode(type, "UTF-8");
+		response.sendRedirect(request.getRequestURI() + firstPage);
+		return;
+	}
+	if (productPage.getItems().isEmpty() && (search != null || type != null)) {
 		message = "No items found for the search '" + (search != null ? search : type) + "'";
-		products = prodDao.getAllProducts();
+		search = null;
+		type = null;
+		productPage = prodDao.getProductsPage(null, ProductServiceImpl.PAGE_SIZE);
 	}
+	List<ProductBean> products = productPage.getItems();
 	%>
 
 
@@ -62,12 +77,13 @@
 		<div class="row text-center">
 
 			<%
+			StringIntMap cartQuantities = new CartServiceImpl().getCartQuantities(userName);
 			for (ProductBean product : products) {
-				int cartQty = new CartServiceImpl().getCartItemCount(userName, product.getProdId());
+				int cartQty = cartQuantities.get(product.getProdId());
 			%>
 			<div class="col-sm-4" style='height: 350px;'>
 				<div class="thumbnail">
-					<img src="./ShowImage?pid=<%=product.getProdId()%>" alt="Product"
+					<img src="./ShowImage?pid=<%=product.getProdId()%>&size=medium" alt="Product"
 						style="height: 150px; max-width: 180px">
 					<p class="productname"><%=product.getProdName()%>
 					</p>
@@ -117,6 +133,28 @@
 	</div>
 	<!-- ENd of Product Items List -->
 
+	<div class="text-center" style="margin-bottom: 20px;">
+		<%
+		String pageQuery = "";
+		if (search != null)
+			pageQuery = "&search=" + java.net.URLEncoder.encode(search, "UTF-8");
+		else if (type != null)
+			pageQuery = "&type=" + java.net.URLEncoder.encode(type, "UTF-8");
+		if (cursor != null) {
+		%>
+		<a href="?<%=pageQuery.isEmpty() ? "" : pageQuery.substring(1)%>"
+			class="btn btn-default">First Page</a> &nbsp;&nbsp;&nbsp;
+		<%
+		}
+		if (productPage.hasNext()) {
+		%>
+		<a href="?cursor=<%=productPage.getNextCursor()%><%=pageQuery%>"
+			class="btn btn-default">Next Page</a>
+		<%
+		}
+		%>
+	</div>
+
 
 	<%@ include file="footer.html"%>
 
@@ -0,0 +1,20 @@
+-- -----------------------------------------------------
+-- Downscaled product images (ImageVariant), one row per
+-- product and rendition. Existing products get their rows
+-- on first request, no backfill is needed.
+-- -----------------------------------------------------
+USE `shopping-cart`;
+
+CREATE TABLE IF NOT EXISTS `shopping-cart`.`product_image_variant` (
+  `pid` VARCHAR(45) NOT NULL,
+  `variant` VARCHAR(20) NOT NULL,
+  `image` MEDIUMBLOB NULL DEFAULT NULL,
+  PRIMARY KEY (`pid`, `variant`),
+  CONSTRAINT `variantpid`
+    FOREIGN KEY (`pid`)
+    REFERENCES `shopping-cart`.`product` (`pid`)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = utf8mb4
+COLLATE = utf8mb4_0900_ai_ci;
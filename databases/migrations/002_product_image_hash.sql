@@ -0,0 +1,11 @@
+-- -----------------------------------------------------
+-- SHA-256 of product images kept in the file store
+-- (image.storage=file). Rows with an image_hash have a
+-- NULL image BLOB. Existing BLOBs are moved out with
+--   java -cp <classpath> com.shashi.utility.ImageStoreMigration
+-- -----------------------------------------------------
+USE `shopping-cart`;
+
+ALTER TABLE `shopping-cart`.`product`
+  ADD COLUMN `image_hash` CHAR(64) NULL DEFAULT NULL AFTER `image`,
+  ADD INDEX `imagehash_idx` (`image_hash` ASC) VISIBLE;
@@ -0,0 +1,33 @@
+-- -----------------------------------------------------
+-- One cart line per user and product: (username, prodid)
+-- becomes the primary key of usercart so cart updates can
+-- be single-statement upserts. Duplicate lines left by
+-- concurrent clicks are merged first, adding up their
+-- quantities as the cart count already did.
+-- -----------------------------------------------------
+USE `shopping-cart`;
+
+START TRANSACTION;
+
+CREATE TEMPORARY TABLE `usercart_merged` AS
+  SELECT `username`, `prodid`, SUM(`quantity`) AS `quantity`
+  FROM `shopping-cart`.`usercart`
+  WHERE `username` IS NOT NULL AND `prodid` IS NOT NULL
+  GROUP BY `username`, `prodid`;
+
+DELETE FROM `shopping-cart`.`usercart`;
+
+INSERT INTO `shopping-cart`.`usercart` (`username`, `prodid`, `quantity`)
+  SELECT `username`, `prodid`, `quantity` FROM `usercart_merged`;
+
+COMMIT;
+
+DROP TEMPORARY TABLE `usercart_merged`;
+
+-- the primary key leads with username, so it also serves the
+-- useremail foreign key
+ALTER TABLE `shopping-cart`.`usercart`
+  MODIFY `username` VARCHAR(60) NOT NULL,
+  MODIFY `prodid` VARCHAR(45) NOT NULL,
+  ADD PRIMARY KEY (`username`, `prodid`),
+  DROP INDEX `useremail_idx`;
@@ -0,0 +1,9 @@
+-- -----------------------------------------------------
+-- Lets the shipped and unshipped order pages read one
+-- page of order lines in (orderid, prodid) order
+-- straight off an index instead of scanning orders.
+-- -----------------------------------------------------
+USE `shopping-cart`;
+
+ALTER TABLE `shopping-cart`.`orders`
+  ADD INDEX `shipped_idx` (`shipped` ASC, `orderid` ASC, `prodid` ASC) VISIBLE;
@@ -0,0 +1,11 @@
+-- -----------------------------------------------------
+-- Lets the order history page read one page of a
+-- customer's orders newest first straight off an index.
+-- The new index leads with username, so it also backs
+-- the truserid foreign key and replaces truserid_idx.
+-- -----------------------------------------------------
+USE `shopping-cart`;
+
+ALTER TABLE `shopping-cart`.`transactions`
+  ADD INDEX `usertime_idx` (`username` ASC, `time` ASC) VISIBLE,
+  DROP INDEX `truserid_idx`;
@@ -0,0 +1,22 @@
+-- -----------------------------------------------------
+-- Outgoing mails (MailOutbox), saved by the request that
+-- triggers them and sent in the background. A row is
+-- deleted once sent; next_attempt is null for mails given
+-- up on after mail.outbox.maxAttempts.
+-- -----------------------------------------------------
+USE `shopping-cart`;
+
+CREATE TABLE IF NOT EXISTS `shopping-cart`.`mail_outbox` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT,
+  `recipient` VARCHAR(60) NOT NULL,
+  `subject` VARCHAR(255) NOT NULL,
+  `body` MEDIUMTEXT NOT NULL,
+  `attempts` INT NOT NULL DEFAULT 0,
+  `next_attempt` DATETIME(3) NULL DEFAULT NULL,
+  `last_error` VARCHAR(255) NULL DEFAULT NULL,
+  `created` DATETIME(3) NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `nextattempt_idx` (`next_attempt` ASC) VISIBLE)
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = utf8mb4
+COLLATE = utf8mb4_0900_ai_ci;
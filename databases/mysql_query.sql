@@ -27,7 +27,9 @@ CREATE TABLE IF NOT EXISTS `shopping-cart`.`product` (
   `pprice` DECIMAL(12,2) NULL DEFAULT NULL,
   `pquantity` INT NULL DEFAULT NULL,
   `image` LONGBLOB NULL DEFAULT NULL,
-  PRIMARY KEY (`pid`))
+  `image_hash` CHAR(64) NULL DEFAULT NULL,
+  PRIMARY KEY (`pid`),
+  INDEX `imagehash_idx` (`image_hash` ASC) VISIBLE)
 ENGINE = InnoDB
 DEFAULT CHARACTER SET = utf8mb4
 COLLATE = utf8mb4_0900_ai_ci;
@@ -46,6 +48,7 @@ CREATE TABLE IF NOT EXISTS `shopping-cart`.`orders` (
   `shipped` INT NOT NULL DEFAULT 0,
   PRIMARY KEY (`orderid`, `prodid`),
   INDEX `productid_idx` (`prodid` ASC) VISIBLE,
+  INDEX `shipped_idx` (`shipped` ASC, `orderid` ASC, `prodid` ASC) VISIBLE,
   CONSTRAINT `productid`
     FOREIGN KEY (`prodid`)
     REFERENCES `shopping-cart`.`product` (`pid`)
@@ -85,7 +88,7 @@ CREATE TABLE IF NOT EXISTS `shopping-cart`.`transactions` (
   `time` DATETIME NULL DEFAULT NULL,
   `amount` DECIMAL(10,2) NULL DEFAULT NULL,
   PRIMARY KEY (`transid`),
-  INDEX `truserid_idx` (`username` ASC) VISIBLE,
+  INDEX `usertime_idx` (`username` ASC, `time` ASC) VISIBLE,
   CONSTRAINT `truserid`
     FOREIGN KEY (`username`)
     REFERENCES `shopping-cart`.`user` (`email`)
@@ -133,10 +136,10 @@ COLLATE = utf8mb4_0900_ai_ci;
 DROP TABLE IF EXISTS `shopping-cart`.`usercart` ;
 
 CREATE TABLE IF NOT EXISTS `shopping-cart`.`usercart` (
-  `username` VARCHAR(60) NULL DEFAULT NULL,
-  `prodid` VARCHAR(45) NULL DEFAULT NULL,
+  `username` VARCHAR(60) NOT NULL,
+  `prodid` VARCHAR(45) NOT NULL,
   `quantity` INT NULL DEFAULT NULL,
-  INDEX `useremail_idx` (`username` ASC) VISIBLE,
+  PRIMARY KEY (`username`, `prodid`),
   INDEX `prodidcart_idx` (`prodid` ASC) VISIBLE,
   CONSTRAINT `useremail`
     FOREIGN KEY (`username`)
@@ -153,6 +156,47 @@ DEFAULT CHARACTER SET = utf8mb4
 COLLATE = utf8mb4_0900_ai_ci;
 
 
+-- -----------------------------------------------------
+-- Table `shopping-cart`.`product_image_variant`
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `shopping-cart`.`product_image_variant` ;
+
+CREATE TABLE IF NOT EXISTS `shopping-cart`.`product_image_variant` (
+  `pid` VARCHAR(45) NOT NULL,
+  `variant` VARCHAR(20) NOT NULL,
+  `image` MEDIUMBLOB NULL DEFAULT NULL,
+  PRIMARY KEY (`pid`, `variant`),
+  CONSTRAINT `variantpid`
+    FOREIGN KEY (`pid`)
+    REFERENCES `shopping-cart`.`product` (`pid`)
+    ON DELETE CASCADE
+    ON UPDATE NO ACTION)
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = utf8mb4
+COLLATE = utf8mb4_0900_ai_ci;
+
+
+-- -----------------------------------------------------
+-- Table `shopping-cart`.`mail_outbox`
+-- -----------------------------------------------------
+DROP TABLE IF EXISTS `shopping-cart`.`mail_outbox` ;
+
+CREATE TABLE IF NOT EXISTS `shopping-cart`.`mail_outbox` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT,
+  `recipient` VARCHAR(60) NOT NULL,
+  `subject` VARCHAR(255) NOT NULL,
+  `body` MEDIUMTEXT NOT NULL,
+  `attempts` INT NOT NULL DEFAULT 0,
+  `next_attempt` DATETIME(3) NULL DEFAULT NULL,
+  `last_error` VARCHAR(255) NULL DEFAULT NULL,
+  `created` DATETIME(3) NOT NULL,
+  PRIMARY KEY (`id`),
+  INDEX `nextattempt_idx` (`next_attempt` ASC) VISIBLE)
+ENGINE = InnoDB
+DEFAULT CHARACTER SET = utf8mb4
+COLLATE = utf8mb4_0900_ai_ci;
+
+
 SET SQL_MODE=@OLD_SQL_MODE;
 SET FOREIGN_KEY_CHECKS=@OLD_FOREIGN_KEY_CHECKS;
 SET UNIQUE_CHECKS=@OLD_UNIQUE_CHECKS;
@@ -0,0 +1,46 @@
+package com.shashi.beans;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. nextCursor is an opaque token to
+ * pass back for the following page, or null on the last page.
+ */
+@SuppressWarnings("serial")
+public class PageBean<T> implements Serializable {
+
+	private List<T> items;
+
+	private String nextCursor;
+
+	public PageBean() {
+	}
+
+	public PageBean(List<T> items, String nextCursor) {
+		super();
+		this.items = items;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	public void setItems(List<T> items) {
+		this.items = items;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	public boolean hasNext() {
+		return nextCursor != null;
+	}
+
+}
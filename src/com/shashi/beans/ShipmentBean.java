@@ -0,0 +1,101 @@
+package com.shashi.beans;
+
+import java.io.Serializable;
+
+/**
+ * An order line together with the customer it goes to, as listed on the
+ * shipped and unshipped order pages.
+ */
+@SuppressWarnings("serial")
+public class ShipmentBean implements Serializable {
+
+	private String transactionId;
+	private String productId;
+	private int quantity;
+	private Double amount;
+	private int shipped;
+	private String userId;
+	private String userAddr;
+	private String userName;
+
+	public ShipmentBean() {
+		super();
+	}
+
+	public ShipmentBean(String transactionId, String productId, int quantity, Double amount, int shipped,
+			String userId, String userAddr) {
+		super();
+		this.transactionId = transactionId;
+		this.productId = productId;
+		this.quantity = quantity;
+		this.amount = amount;
+		this.shipped = shipped;
+		this.userId = userId;
+		this.userAddr = userAddr;
+	}
+
+	public String getTransactionId() {
+		return transactionId;
+	}
+
+	public void setTransactionId(String transactionId) {
+		this.transactionId = transactionId;
+	}
+
+	public String getProductId() {
+		return productId;
+	}
+
+	public void setProductId(String productId) {
+		this.productId = productId;
+	}
+
+	public int getQuantity() {
+		return quantity;
+	}
+
+	public void setQuantity(int quantity) {
+		this.quantity = quantity;
+	}
+
+	public Double getAmount() {
+		return amount;
+	}
+
+	public void setAmount(Double amount) {
+		this.amount = amount;
+	}
+
+	public int getShipped() {
+		return shipped;
+	}
+
+	public void setShipped(int shipped) {
+		this.shipped = shipped;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public String getUserAddr() {
+		return userAddr;
+	}
+
+	public void setUserAddr(String userAddr) {
+		this.userAddr = userAddr;
+	}
+
+	public String getUserName() {
+		return userName;
+	}
+
+	public void setUserName(String userName) {
+		this.userName = userName;
+	}
+
+}
@@ -3,6 +3,7 @@ package com.shashi.service;
 import java.util.List;
 
 import com.shashi.beans.CartBean;
+import com.shashi.utility.StringIntMap;
 
 public interface CartService {
 
@@ -16,6 +17,9 @@ public interface CartService {
 
 	public int getCartItemCount(String userId, String itemId);
 
+	/* prodId -> quantity of every line in the user's cart, in one query */
+	public StringIntMap getCartQuantities(String userId);
+
 	public String removeProductFromCart(String userId, String prodId);
 
 	public boolean removeAProduct(String userId, String prodId);
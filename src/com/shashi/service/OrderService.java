@@ -1,10 +1,14 @@
 package com.shashi.service;
 
+import java.util.Collection;
 import java.util.List;
 
 import com.shashi.beans.OrderBean;
 import com.shashi.beans.OrderDetails;
+import com.shashi.beans.PageBean;
+import com.shashi.beans.ShipmentBean;
 import com.shashi.beans.TransactionBean;
+import com.shashi.utility.StringIntMap;
 
 public interface OrderService {
 
@@ -16,11 +20,23 @@ public interface OrderService {
 
 	public int countSoldItem(String prodId);
 
+	/* units sold of each of the products, read from memory */
+	public StringIntMap getSoldCounts(Collection<String> prodIds);
+
 	public List<OrderBean> getAllOrders();
 
+	/* order lines with their customer's email and address, shipped or not, ordered by (orderid, prodid) */
+	public PageBean<ShipmentBean> getShipmentsPage(boolean shipped, String cursor, int pageSize);
+
 	public List<OrderBean> getOrdersByUserId(String emailId);
 
 	public List<OrderDetails> getAllOrderDetails(String userEmailId);
 
+	/* the customer's order lines a page of orders at a time, newest order first */
+	public PageBean<OrderDetails> getOrderDetailsPage(String userEmailId, String cursor, int pageSize);
+
 	public String shipNow(String orderId, String prodId);
+
+	/* ships many order lines at once; per input line the shipped line with its customer and amount, or null if it was not an unshipped order line */
+	public List<ShipmentBean> shipOrders(List<ShipmentBean> lines);
 }
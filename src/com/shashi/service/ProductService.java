@@ -1,9 +1,16 @@
 package com.shashi.service;
 
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+import com.shashi.beans.PageBean;
 import com.shashi.beans.ProductBean;
+import com.shashi.utility.ImageCache;
+import com.shashi.utility.ImageVariant;
+import com.shashi.utility.InventoryEngine;
 
 public interface ProductService {
 
@@ -18,21 +25,82 @@ public interface ProductService {
 
 	public String updateProductPrice(String prodId, double updatedPrice);
 
+	/*
+	 * The listing and lookup methods return summary beans: every field except
+	 * prodImage, which stays null. Image bytes are loaded on demand with
+	 * getImage(prodId).
+	 */
 	public List<ProductBean> getAllProducts();
 
 	public List<ProductBean> getAllProductsByType(String type);
 
 	public List<ProductBean> searchAllProducts(String search);
 
+	/*
+	 * Keyset paginated variants of the listings above. Pass null as the cursor
+	 * for the first page and the returned page's nextCursor for the next one.
+	 */
+	public PageBean<ProductBean> getProductsPage(String cursor, int pageSize);
+
+	public PageBean<ProductBean> getProductsByTypePage(String type, String cursor, int pageSize);
+
+	public PageBean<ProductBean> searchProductsPage(String search, String cursor, int pageSize);
+
 	public byte[] getImage(String prodId);
 
+	/*
+	 * Downscaled rendition of the product image, generated when the image is
+	 * uploaded (or on first use for older products); null if the product has
+	 * no image or it cannot be decoded.
+	 */
+	public byte[] getImageVariant(String prodId, ImageVariant variant);
+
+	/*
+	 * The image (variant null) or a rendition of it together with its entity
+	 * tag, served from the off-heap image cache and loaded on a miss. Falls
+	 * back to the original when the rendition cannot be made; null if the
+	 * product has no image.
+	 */
+	public ImageCache.CachedImage getCachedImage(String prodId, ImageVariant variant);
+
+	/*
+	 * Content hash of the product image (SHA-256 for images in the file store,
+	 * SHA-1 otherwise), for use as an HTTP entity tag; null if the product
+	 * does not exist or has no image.
+	 */
+	public String getImageTag(String prodId);
+
+	/*
+	 * Location of the product image when it is kept in the content addressed
+	 * file store (image.storage=file) rather than in the database; else null.
+	 */
+	public Path getImageFile(String prodId);
+
 	public ProductBean getProductDetails(String prodId);
 
+	/*
+	 * Looks up several products at once, in as few queries as possible. The
+	 * map iterates in the order of the given ids; ids with no product are left
+	 * out.
+	 */
+	public Map<String, ProductBean> getProductsByIds(Collection<String> prodIds);
+
 	public String updateProductWithoutImage(String prevProductId, ProductBean updatedProduct);
 
 	public double getProductPrice(String prodId);
 
 	public boolean sellNProduct(String prodId, int n);
 
+	/*
+	 * Takes n units out of stock unless fewer are left; the outcome tells why
+	 * a sale was refused.
+	 */
+	public InventoryEngine.Outcome sellProduct(String prodId, int n);
+
+	/*
+	 * Puts back n units sold for an order that could not be placed.
+	 */
+	public boolean restockProduct(String prodId, int n);
+
 	public int getProductQuantity(String prodId);
 }
@@ -5,52 +5,95 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.shashi.beans.CartBean;
 import com.shashi.beans.DemandBean;
 import com.shashi.beans.ProductBean;
 import com.shashi.service.CartService;
 import com.shashi.utility.DBUtil;
+import com.shashi.utility.StringIntMap;
 
 public class CartServiceImpl implements CartService {
 
+	private static final ResourceBundle RB = ResourceBundle.getBundle("application");
+	private static final int COUNT_CACHE_SIZE = DBUtil.getInt(RB, "cart.countCache.maxSize", 10000);
+	private static final long COUNT_CACHE_TTL_MILLIS = DBUtil.getInt(RB, "cart.countCache.ttlSeconds", 30) * 1000L;
+
+	// sum of the cart quantities per user, as shown on every page header: an
+	// LRU of the recent users, each count expiring so changes made on another
+	// node show up
+	private static final Map<String, CartCount> CART_COUNTS = new LinkedHashMap<String, CartCount>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CartCount> eldest) {
+			return size() > COUNT_CACHE_SIZE;
+		}
+	};
+
+	// bumped after every cart write, so a count loaded while a write was in
+	// flight is not cached
+	private static final AtomicLong CART_WRITES = new AtomicLong();
+
 	@Override
 	public String addProductToCart(String userId, String prodId, int prodQty) {
 		String status = "Failed to Add into Cart";
 
+		ProductBean product = new ProductServiceImpl().getProductDetails(prodId);
+
+		if (product == null || prodQty <= 0)
+			return status;
+
+		int availableQty = product.getProdQuantity();
+
 		Connection con = DBUtil.provideConnection();
 
 		PreparedStatement ps = null;
-		PreparedStatement ps2 = null;
-		ResultSet rs = null;
 
 		try {
 
-			ps = con.prepareStatement("select * from usercart where username=? and prodid=?");
+			// one statement adds to the line, or creates it, while the stock
+			// covers the new quantity: 1 row inserted, 2 updated. The stock
+			// check sits in the select so a short stock changes 0 rows; left
+			// unchanged by the update it would count 1, as the driver counts
+			// found rows
+			ps = con.prepareStatement("insert into usercart(username, prodid, quantity) select ?, ?, ? from dual"
+					+ " where coalesce((select quantity from usercart where username=? and prodid=?), 0) + ? <= ?"
+					+ " on duplicate key update quantity=quantity + values(quantity)");
 
 			ps.setString(1, userId);
 			ps.setString(2, prodId);
+			ps.setInt(3, prodQty);
+			ps.setString(4, userId);
+			ps.setString(5, prodId);
+			ps.setInt(6, prodQty);
+			ps.setInt(7, availableQty);
 
-			rs = ps.executeQuery();
-
-			if (rs.next()) {
-
-				int cartQuantity = rs.getInt("quantity");
+			int k = ps.executeUpdate();
 
-				ProductBean product = new ProductServiceImpl().getProductDetails(prodId);
+			if (k > 0) {
+				adjustCartCount(userId, prodQty);
+				status = "Product Successfully Updated to Cart!";
+			} else {
 
-				int availableQty = product.getProdQuantity();
+				prodQty += getCartItemCount(userId, prodId);
 
-				prodQty += cartQuantity;
-				//
 				if (availableQty < prodQty) {
 
-					status = updateProductToCart(userId, prodId, availableQty);
+					if (availableQty == 0) {
+						status = "Product is Out of Stock!";
+					} else {
+						updateProductToCart(userId, prodId, availableQty);
 
-					status = "Only " + availableQty + " no of " + product.getProdName()
-							+ " are available in the shop! So we are adding only " + availableQty
-							+ " no of that item into Your Cart" + "";
+						status = "Only " + availableQty + " no of " + product.getProdName()
+								+ " are available in the shop! So we are adding only " + availableQty
+								+ " no of that item into Your Cart" + "";
+					}
 
 					DemandBean demandBean = new DemandBean(userId, product.getProdId(), prodQty - availableQty);
 
@@ -73,10 +116,8 @@ public class CartServiceImpl implements CartService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
-		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
@@ -114,16 +155,26 @@ public class CartServiceImpl implements CartService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return items;
 	}
 
 	@Override
 	public int getCartCount(String userId) {
+		if (userId == null)
+			return 0;
+
+		Integer cached = cachedCartCount(userId);
+		if (cached != null)
+			return cached;
+
+		long writes = CART_WRITES.get();
+
 		int count = 0;
+		boolean loaded = false;
 
 		Connection con = DBUtil.provideConnection();
 
@@ -141,14 +192,19 @@ public class CartServiceImpl implements CartService {
 			if (rs.next() && !rs.wasNull())
 				count = rs.getInt(1);
 
+			loaded = true;
+
 		} catch (SQLException e) {
 
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		if (loaded)
+			cacheCartCount(userId, count, writes);
 
 		return count;
 	}
@@ -161,65 +217,41 @@ public class CartServiceImpl implements CartService {
 
 		PreparedStatement ps = null;
 		PreparedStatement ps2 = null;
-		ResultSet rs = null;
 
 		try {
 
-			ps = con.prepareStatement("select * from usercart where username=? and prodid=?");
+			ps = con.prepareStatement(
+					"update usercart set quantity=quantity - 1 where username=? and prodid=? and quantity > 1");
 
 			ps.setString(1, userId);
 			ps.setString(2, prodId);
 
-			rs = ps.executeQuery();
-
-			if (rs.next()) {
-
-				int prodQuantity = rs.getInt("quantity");
-
-				prodQuantity -= 1;
-
-				if (prodQuantity > 0) {
-					ps2 = con.prepareStatement("update usercart set quantity=? where username=? and prodid=?");
-
-					ps2.setInt(1, prodQuantity);
-
-					ps2.setString(2, userId);
-
-					ps2.setString(3, prodId);
-
-					int k = ps2.executeUpdate();
-
-					if (k > 0)
-						status = "Product Successfully removed from the Cart!";
-				} else if (prodQuantity <= 0) {
-
-					ps2 = con.prepareStatement("delete from usercart where username=? and prodid=?");
-
-					ps2.setString(1, userId);
-
-					ps2.setString(2, prodId);
+			int k = ps.executeUpdate();
 
-					int k = ps2.executeUpdate();
+			if (k == 0) {
+				// the last unit takes the line with it
+				ps2 = con.prepareStatement("delete from usercart where username=? and prodid=? and quantity <= 1");
 
-					if (k > 0)
-						status = "Product Successfully removed from the Cart!";
-				}
+				ps2.setString(1, userId);
+				ps2.setString(2, prodId);
 
-			} else {
+				k = ps2.executeUpdate();
+			}
 
+			if (k > 0) {
+				adjustCartCount(userId, -1);
+				status = "Product Successfully removed from the Cart!";
+			} else
 				status = "Product Not Available in the cart!";
 
-			}
-
 		} catch (SQLException e) {
 			status = "Error: " + e.getMessage();
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
 		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
@@ -249,9 +281,11 @@ public class CartServiceImpl implements CartService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		invalidateCartCount(userId);
 
 		return flag;
 	}
@@ -264,60 +298,34 @@ public class CartServiceImpl implements CartService {
 		Connection con = DBUtil.provideConnection();
 
 		PreparedStatement ps = null;
-		PreparedStatement ps2 = null;
-		ResultSet rs = null;
 
 		try {
 
-			ps = con.prepareStatement("select * from usercart where username=? and prodid=?");
-
-			ps.setString(1, userId);
-			ps.setString(2, prodId);
-
-			rs = ps.executeQuery();
-
-			if (rs.next()) {
-
-				if (prodQty > 0) {
-					ps2 = con.prepareStatement("update usercart set quantity=? where username=? and prodid=?");
-
-					ps2.setInt(1, prodQty);
-
-					ps2.setString(2, userId);
-
-					ps2.setString(3, prodId);
-
-					int k = ps2.executeUpdate();
-
-					if (k > 0)
-						status = "Product Successfully Updated to Cart!";
-				} else if (prodQty == 0) {
-					ps2 = con.prepareStatement("delete from usercart where username=? and prodid=?");
-
-					ps2.setString(1, userId);
+			if (prodQty > 0) {
+				ps = con.prepareStatement("insert into usercart(username, prodid, quantity) values(?,?,?)"
+						+ " on duplicate key update quantity=values(quantity)");
 
-					ps2.setString(2, prodId);
+				ps.setString(1, userId);
 
-					int k = ps2.executeUpdate();
+				ps.setString(2, prodId);
 
-					if (k > 0)
-						status = "Product Successfully Updated in Cart!";
-				}
-			} else {
+				ps.setInt(3, prodQty);
 
-				ps2 = con.prepareStatement("insert into usercart values(?,?,?)");
+				int k = ps.executeUpdate();
 
-				ps2.setString(1, userId);
+				if (k > 0)
+					status = "Product Successfully Updated to Cart!";
+			} else if (prodQty == 0) {
+				ps = con.prepareStatement("delete from usercart where username=? and prodid=?");
 
-				ps2.setString(2, prodId);
+				ps.setString(1, userId);
 
-				ps2.setInt(3, prodQty);
+				ps.setString(2, prodId);
 
-				int k = ps2.executeUpdate();
+				int k = ps.executeUpdate();
 
 				if (k > 0)
-					status = "Product Successfully Updated to Cart!";
-
+					status = "Product Successfully Updated in Cart!";
 			}
 
 		} catch (SQLException e) {
@@ -325,10 +333,10 @@ public class CartServiceImpl implements CartService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(rs);
-		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(con);
+
+		invalidateCartCount(userId);
 
 		return status;
 	}
@@ -342,7 +350,7 @@ public class CartServiceImpl implements CartService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select sum(quantity) from usercart where username=? and prodid=?");
+			ps = con.prepareStatement("select quantity from usercart where username=? and prodid=?");
 			ps.setString(1, userId);
 			ps.setString(2, prodId);
 			rs = ps.executeQuery();
@@ -354,6 +362,10 @@ public class CartServiceImpl implements CartService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
 		return count;
 	}
 
@@ -384,10 +396,133 @@ public class CartServiceImpl implements CartService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return count;
 	}
+
+	@Override
+	public StringIntMap getCartQuantities(String userId) {
+		StringIntMap quantities = new StringIntMap();
+		if (userId == null)
+			return quantities;
+
+		long writes = CART_WRITES.get();
+		boolean loaded = false;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select prodid, quantity from usercart where username=?");
+
+			ps.setString(1, userId);
+
+			rs = ps.executeQuery();
+
+			while (rs.next())
+				quantities.put(rs.getString(1), rs.getInt(2));
+
+			loaded = true;
+
+		} catch (SQLException e) {
+
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		// the same rows give the header count
+		if (loaded)
+			cacheCartCount(userId, quantities.sum(), writes);
+
+		return quantities;
+	}
+
+	/*
+	 * Follows a change of known size; after an absolute write the count is
+	 * loaded again instead.
+	 */
+	private static Integer cachedCartCount(String userId) {
+		if (COUNT_CACHE_SIZE <= 0 || COUNT_CACHE_TTL_MILLIS <= 0)
+			return null;
+		synchronized (CART_COUNTS) {
+			CartCount cached = CART_COUNTS.get(userId);
+			if (cached == null)
+				return null;
+			if (System.currentTimeMillis() - cached.loadedAt > COUNT_CACHE_TTL_MILLIS) {
+				CART_COUNTS.remove(userId);
+				return null;
+			}
+			return cached.count;
+		}
+	}
+
+	/*
+	 * Caches a count loaded from the database, unless a cart write happened
+	 * since the load started.
+	 */
+	private static void cacheCartCount(String userId, int count, long writes) {
+		if (COUNT_CACHE_SIZE <= 0 || COUNT_CACHE_TTL_MILLIS <= 0)
+			return;
+		synchronized (CART_COUNTS) {
+			if (CART_WRITES.get() == writes && !CART_COUNTS.containsKey(userId))
+				CART_COUNTS.put(userId, new CartCount(count, System.currentTimeMillis()));
+		}
+	}
+
+	private static void adjustCartCount(String userId, int delta) {
+		synchronized (CART_COUNTS) {
+			CART_WRITES.incrementAndGet();
+			CartCount cached = CART_COUNTS.get(userId);
+			// keeps the load time: the count still expires on schedule
+			if (cached != null)
+				CART_COUNTS.put(userId, new CartCount(Math.max(0, cached.count + delta), cached.loadedAt));
+		}
+	}
+
+	private static void invalidateCartCount(String userId) {
+		synchronized (CART_COUNTS) {
+			CART_WRITES.incrementAndGet();
+			CART_COUNTS.remove(userId);
+		}
+	}
+
+	/**
+	 * Records that the user's whole cart was checked out.
+	 */
+	static void cartCheckedOut(String userId) {
+		synchronized (CART_COUNTS) {
+			CART_WRITES.incrementAndGet();
+			if (COUNT_CACHE_SIZE > 0 && COUNT_CACHE_TTL_MILLIS > 0)
+				CART_COUNTS.put(userId, new CartCount(0, System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Drops every cached count, after lines of many users were deleted at once.
+	 */
+	public static void invalidateCartCounts() {
+		synchronized (CART_COUNTS) {
+			CART_WRITES.incrementAndGet();
+			CART_COUNTS.clear();
+		}
+	}
+
+	private static final class CartCount {
+		final int count;
+		final long loadedAt;
+
+		CartCount(int count, long loadedAt) {
+			this.count = count;
+			this.loadedAt = loadedAt;
+		}
+	}
 }
@@ -0,0 +1,159 @@
+package com.shashi.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.shashi.beans.TransactionBean;
+import com.shashi.service.impl.OrderServiceImpl.Checkout;
+import com.shashi.utility.DBUtil;
+
+/**
+ * Compares checkout throughput with a commit per order against group commit,
+ * against the database in application.properties.
+ *
+ * <pre>
+ * java -cp WEB-INF/classes:WEB-INF/lib/* com.shashi.service.impl.CheckoutBenchmark [threads] [ordersPerThread] [maxBatchSize] [maxWaitMillis]
+ * </pre>
+ *
+ * Every thread is a customer of its own that puts one product in the cart and
+ * checks out, over and over; no mails are sent. The benchmark users, products
+ * and their orders are deleted again at the end.
+ */
+public class CheckoutBenchmark {
+
+	private static final String PREFIX = "bench-checkout-";
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int ordersPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+		int maxWaitMillis = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+
+		try {
+			createFixtures(threads, ordersPerThread);
+
+			// warm up the pool, the statement caches and the JIT
+			run("warm-up", threads, Math.min(20, ordersPerThread), null);
+
+			run("commit per order", threads, ordersPerThread, null);
+
+			GroupCommitter committer = new GroupCommitter(maxBatchSize, maxWaitMillis);
+			run("group commit", threads, ordersPerThread, committer);
+			committer.shutdown();
+			System.out.println(committer);
+
+		} finally {
+			deleteFixtures();
+			ProductServiceImpl.getInventory().shutdown();
+			DBUtil.shutdownPool();
+		}
+	}
+
+	private static void run(String name, int threads, int ordersPerThread, GroupCommitter committer)
+			throws InterruptedException {
+		AtomicInteger placed = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		List<Thread> workers = new ArrayList<Thread>();
+
+		long start = System.nanoTime();
+
+		for (int t = 0; t < threads; t++) {
+			String userName = PREFIX + t + "@example.invalid";
+			String prodId = PREFIX + t;
+
+			Thread worker = new Thread(() -> {
+				CartServiceImpl cart = new CartServiceImpl();
+				for (int i = 0; i < ordersPerThread; i++) {
+					cart.updateProductToCart(userName, prodId, 1);
+
+					Checkout checkout = new Checkout(userName, new TransactionBean(userName, 1));
+					if (committer != null)
+						committer.submit(checkout);
+					else
+						OrderServiceImpl.commitAlone(checkout);
+					OrderServiceImpl.completed(checkout);
+
+					if (checkout.ordered)
+						placed.incrementAndGet();
+					else
+						failed.incrementAndGet();
+				}
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		for (Thread worker : workers)
+			worker.join();
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-17s %6d orders in %6.2f s  %8.1f orders/s  (%d failed)", name,
+				placed.get(), seconds, placed.get() / seconds, failed.get()));
+	}
+
+	private static void createFixtures(int threads, int ordersPerThread) throws SQLException {
+		deleteFixtures();
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+
+		try {
+			ps = con.prepareStatement("insert into user(email, name, password) values(?,?,?)");
+			ps2 = con.prepareStatement("insert into product(pid, pname, ptype, pinfo, pprice, pquantity)"
+					+ " values(?,?,'other','checkout benchmark',1,?)");
+
+			for (int t = 0; t < threads; t++) {
+				ps.setString(1, PREFIX + t + "@example.invalid");
+				ps.setString(2, "Benchmark");
+				ps.setString(3, "benchmark");
+				ps.addBatch();
+
+				ps2.setString(1, PREFIX + t);
+				ps2.setString(2, "Benchmark " + t);
+				ps2.setInt(3, ordersPerThread * 3);
+				ps2.addBatch();
+			}
+
+			ps.executeBatch();
+			ps2.executeBatch();
+
+		} finally {
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(ps2);
+			DBUtil.closeConnection(con);
+		}
+	}
+
+	private static void deleteFixtures() throws SQLException {
+		String users = PREFIX + "%@example.invalid";
+		String products = PREFIX + "%";
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+			String[] deletes = { "delete from transactions where username like ?",
+					"delete from orders where prodid like ?", "delete from usercart where username like ?",
+					"delete from user where email like ?", "delete from product where pid like ?" };
+			String[] patterns = { users, products, users, users, products };
+
+			for (int i = 0; i < deletes.length; i++) {
+				ps = con.prepareStatement(deletes[i]);
+				ps.setString(1, patterns[i]);
+				ps.executeUpdate();
+				DBUtil.closeConnection(ps);
+				ps = null;
+			}
+
+		} finally {
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(con);
+		}
+	}
+}
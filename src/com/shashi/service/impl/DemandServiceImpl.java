@@ -54,10 +54,10 @@ public class DemandServiceImpl implements DemandService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(ps2);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return flag;
 	}
@@ -105,10 +105,10 @@ public class DemandServiceImpl implements DemandService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(ps2);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return flag;
 	}
@@ -147,6 +147,10 @@ public class DemandServiceImpl implements DemandService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
 		return demandList;
 	}
 
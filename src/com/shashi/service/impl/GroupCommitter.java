@@ -0,0 +1,254 @@
+package com.shashi.service.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.shashi.service.impl.OrderServiceImpl.Checkout;
+import com.shashi.utility.DBUtil;
+
+/**
+ * Group commit for checkout: concurrent paymentSuccess calls are queued and a
+ * single committer thread places them in one MySQL transaction per batch, so
+ * a burst of orders pays for one commit (and one log flush) instead of one
+ * each.
+ *
+ * A batch is flushed once it holds checkout.groupCommit.maxBatchSize orders
+ * or checkout.groupCommit.maxWaitMillis after its first order arrived. Every
+ * order runs under its own savepoint, so an order that cannot be placed (out
+ * of stock, product removed) is rolled back alone. If the batch transaction
+ * itself fails, e.g. on a deadlock, its orders are retried one by one, so
+ * every caller still gets its own result.
+ */
+public class GroupCommitter {
+
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+
+	private final BlockingQueue<Checkout> queue = new LinkedBlockingQueue<Checkout>();
+	private final Thread committer;
+	private volatile boolean stopped;
+
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder orders = new LongAdder();
+	private final LongAdder retriedBatches = new LongAdder();
+
+	public GroupCommitter(int maxBatchSize, long maxWaitMillis) {
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+
+		this.committer = new Thread(this::run, "checkout-group-commit");
+		committer.setDaemon(true);
+		committer.start();
+	}
+
+	/**
+	 * @return the committer, or null unless checkout.groupCommit=true
+	 */
+	public static GroupCommitter fromConfig() {
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+		if (!rb.containsKey("checkout.groupCommit")
+				|| !"true".equalsIgnoreCase(rb.getString("checkout.groupCommit").trim()))
+			return null;
+
+		int maxBatchSize = DBUtil.getInt(rb, "checkout.groupCommit.maxBatchSize", 32);
+		int maxWaitMillis = DBUtil.getInt(rb, "checkout.groupCommit.maxWaitMillis", 5);
+		return new GroupCommitter(maxBatchSize, maxWaitMillis);
+	}
+
+	/*
+	 * Blocks until the checkout's batch has committed or rolled back.
+	 */
+	void submit(Checkout checkout) {
+		if (stopped) {
+			OrderServiceImpl.commitAlone(checkout);
+			return;
+		}
+
+		queue.add(checkout);
+
+		boolean interrupted = false;
+		synchronized (checkout) {
+			while (!checkout.done) {
+				// the committer stopped before it took this one
+				if (!committer.isAlive() && queue.remove(checkout)) {
+					OrderServiceImpl.commitAlone(checkout);
+					break;
+				}
+				try {
+					checkout.wait(1000);
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Commits what is queued and stops the committer; later checkouts commit
+	 * on their own.
+	 */
+	public void shutdown() {
+		stopped = true;
+		committer.interrupt();
+		try {
+			committer.join(10000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		List<Checkout> batch = new ArrayList<Checkout>(maxBatchSize);
+
+		while (!stopped || !queue.isEmpty()) {
+			try {
+				Checkout first = stopped ? queue.poll() : queue.take();
+				if (first == null)
+					break;
+				batch.add(first);
+
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (batch.size() < maxBatchSize) {
+					long wait = stopped ? 0 : deadline - System.nanoTime();
+					Checkout next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null)
+						break;
+					batch.add(next);
+				}
+			} catch (InterruptedException e) {
+				// shutdown: commit what is queued, then stop
+				if (batch.isEmpty())
+					continue;
+			}
+
+			try {
+				commitBatch(batch);
+			} catch (RuntimeException e) {
+				// a failed batch must not stop group commit for everyone after it
+				e.printStackTrace();
+			}
+			batch.clear();
+		}
+	}
+
+	private void commitBatch(List<Checkout> batch) {
+		boolean committed = false;
+
+		Connection con = DBUtil.provideConnection();
+
+		try {
+			if (con == null)
+				throw new SQLException("No database connection for the checkout batch");
+
+			con.setAutoCommit(false);
+
+			for (Checkout checkout : batch) {
+				Savepoint savepoint = con.setSavepoint();
+
+				OrderServiceImpl.placeOrder(con, checkout);
+
+				if (checkout.ordered)
+					con.releaseSavepoint(savepoint);
+				else
+					con.rollback(savepoint);
+			}
+
+			OrderServiceImpl.SOLD_COUNTS.beginCommit();
+			try {
+				con.commit();
+				committed = true;
+				for (Checkout checkout : batch) {
+					if (checkout.ordered)
+						OrderServiceImpl.SOLD_COUNTS.add(checkout.lines);
+				}
+			} finally {
+				OrderServiceImpl.SOLD_COUNTS.endCommit();
+			}
+
+		} catch (SQLException | RuntimeException e) {
+			e.printStackTrace();
+			if (con != null && !committed) {
+				try {
+					con.rollback();
+				} catch (SQLException e1) {
+					e1.printStackTrace();
+				}
+			}
+		} finally {
+			if (con != null) {
+				try {
+					con.setAutoCommit(true);
+				} catch (SQLException e) {
+					e.printStackTrace();
+				}
+			}
+
+			DBUtil.closeConnection(con);
+
+			if (committed) {
+				batches.increment();
+			} else {
+				retriedBatches.increment();
+				for (Checkout checkout : batch)
+					retryAlone(checkout);
+			}
+			orders.add(batch.size());
+
+			for (Checkout checkout : batch) {
+				synchronized (checkout) {
+					checkout.done = true;
+					checkout.notifyAll();
+				}
+			}
+		}
+	}
+
+	/*
+	 * A checkout that fails again on its own is reported as not ordered, so
+	 * the rest of the batch is still retried and released.
+	 */
+	private static void retryAlone(Checkout checkout) {
+		try {
+			OrderServiceImpl.undo(checkout);
+			OrderServiceImpl.commitAlone(checkout);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			checkout.ordered = false;
+		}
+	}
+
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	public long getOrderCount() {
+		return orders.sum();
+	}
+
+	public long getRetriedBatchCount() {
+		return retriedBatches.sum();
+	}
+
+	public double getAverageBatchSize() {
+		long b = batches.sum() + retriedBatches.sum();
+		return b == 0 ? 0 : (double) orders.sum() / b;
+	}
+
+	@Override
+	public String toString() {
+		return "GroupCommitter[maxBatchSize=" + maxBatchSize + ", maxWaitMillis="
+				+ TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + ", batches=" + getBatchCount() + ", orders="
+				+ getOrderCount() + ", retriedBatches=" + getRetriedBatchCount() + ", averageBatchSize="
+				+ String.format("%.1f", getAverageBatchSize()) + "]";
+	}
+}
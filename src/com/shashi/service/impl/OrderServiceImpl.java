@@ -4,72 +4,287 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
 
-import com.shashi.beans.CartBean;
 import com.shashi.beans.OrderBean;
 import com.shashi.beans.OrderDetails;
+import com.shashi.beans.PageBean;
+import com.shashi.beans.ShipmentBean;
 import com.shashi.beans.TransactionBean;
 import com.shashi.service.OrderService;
+import com.shashi.utility.CursorUtil;
 import com.shashi.utility.DBUtil;
+import com.shashi.utility.InventoryEngine;
 import com.shashi.utility.MailMessage;
+import com.shashi.utility.StringIntMap;
 
 public class OrderServiceImpl implements OrderService {
 
+	static final String REMOVED_PRODUCT_NAME = "(product no longer available)";
+
+	public static final int PAGE_SIZE = DBUtil.getInt(ResourceBundle.getBundle("application"), "orders.pageSize", 50);
+
+	static final SoldCounts SOLD_COUNTS = new SoldCounts();
+
+	// null unless checkout.groupCommit=true
+	private static final GroupCommitter GROUP_COMMITTER = GroupCommitter.fromConfig();
+
 	@Override
 	public String paymentSuccess(String userName, double paidAmount) {
-		String status = "Order Placement Failed!";
+		Checkout checkout = new Checkout(userName, new TransactionBean(userName, paidAmount));
 
-		List<CartBean> cartItems = new ArrayList<CartBean>();
-		cartItems = new CartServiceImpl().getAllCartItems(userName);
+		if (GROUP_COMMITTER != null)
+			GROUP_COMMITTER.submit(checkout);
+		else
+			commitAlone(checkout);
 
-		if (cartItems.size() == 0)
-			return status;
+		completed(checkout);
 
-		TransactionBean transaction = new TransactionBean(userName, paidAmount);
-		boolean ordered = false;
+		if (checkout.ordered) {
+			TransactionBean transaction = checkout.transaction;
+			String transId = transaction.getTransactionId();
+			double transAmount = transaction.getTransAmount();
+			MailMessage.transactionSuccess(userName, new UserServiceImpl().getFName(userName), transId, transAmount);
+		}
 
-		String transactionId = transaction.getTransactionId();
+		return checkout.status;
+	}
 
-		// System.out.println("Transaction: "+transaction.getTransactionId()+"
-		// "+transaction.getTransAmount()+" "+transaction.getUserName()+"
-		// "+transaction.getTransDateTime());
+	public static GroupCommitter getGroupCommitter() {
+		return GROUP_COMMITTER;
+	}
 
-		for (CartBean item : cartItems) {
+	/*
+	 * Places the order in its own transaction.
+	 */
+	static void commitAlone(Checkout checkout) {
+		Connection con = DBUtil.provideConnection();
 
-			double amount = new ProductServiceImpl().getProductPrice(item.getProdId()) * item.getQuantity();
+		if (con == null) {
+			checkout.ordered = false;
+			return;
+		}
 
-			OrderBean order = new OrderBean(transactionId, item.getProdId(), item.getQuantity(), amount);
+		boolean committed = false;
 
-			ordered = addOrder(order);
-			if (!ordered)
-				break;
-			else {
-				ordered = new CartServiceImpl().removeAProduct(item.getUserId(), item.getProdId());
+		try {
+			con.setAutoCommit(false);
+
+			placeOrder(con, checkout);
+
+			if (checkout.ordered) {
+				SOLD_COUNTS.beginCommit();
+				try {
+					con.commit();
+					committed = true;
+					SOLD_COUNTS.add(checkout.lines);
+				} finally {
+					SOLD_COUNTS.endCommit();
+				}
+			} else {
+				con.rollback();
 			}
 
-			if (!ordered)
-				break;
-			else
-				ordered = new ProductServiceImpl().sellNProduct(item.getProdId(), item.getQuantity());
+		} catch (SQLException | RuntimeException e) {
+			e.printStackTrace();
+			if (!committed) {
+				checkout.ordered = false;
+				try {
+					con.rollback();
+				} catch (SQLException e1) {
+					e1.printStackTrace();
+				}
+			}
+		}
 
-			if (!ordered)
-				break;
+		try {
+			con.setAutoCommit(true);
+		} catch (SQLException e) {
+			e.printStackTrace();
 		}
 
-		if (ordered) {
-			ordered = new OrderServiceImpl().addTransaction(transaction);
-			if (ordered) {
+		DBUtil.closeConnection(con);
+	}
+
+	/*
+	 * Runs every statement of the checkout inside the connection's open
+	 * transaction; the caller commits if checkout.ordered is set and rolls
+	 * back otherwise.
+	 */
+	static void placeOrder(Connection con, Checkout checkout) throws SQLException {
+		String userName = checkout.userName;
+		List<CheckoutLine> lines = checkout.lines;
+
+		checkout.status = Checkout.FAILED;
+
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+		ResultSet rs = null;
+
+		try {
+			// locks the cart lines until commit, so the cart cannot change
+			// under the checkout
+			ps = con.prepareStatement("select c.prodid, c.quantity, p.pname, p.pprice, p.pquantity from usercart c"
+					+ " left join product p on p.pid=c.prodid where c.username=? for update of c");
+
+			ps.setString(1, userName);
+
+			rs = ps.executeQuery();
 
-				MailMessage.transactionSuccess(userName, new UserServiceImpl().getFName(userName),
-						transaction.getTransactionId(), transaction.getTransAmount());
+			while (rs.next())
+				lines.add(new CheckoutLine(rs.getString("prodid"), rs.getInt("quantity"), rs.getString("pname"),
+						rs.getDouble("pprice"), rs.getInt("pquantity")));
 
-				status = "Order Placed Successfully!";
+			// empty, or a product was removed meanwhile
+			boolean orderable = !lines.isEmpty() && lines.stream().allMatch(line -> line.prodName != null);
+
+			CheckoutLine shortLine = orderable ? takeStock(con, lines) : null;
+
+			if (orderable && shortLine != null) {
+				checkout.status = "Order Placement Failed! Not enough " + shortLine.prodName + " left in stock.";
+			} else if (orderable) {
+				insertOrders(con, checkout.transaction.getTransactionId(), lines);
+
+				checkout.ordered = new OrderServiceImpl().addTransaction(checkout.transaction);
+
+				if (checkout.ordered) {
+					ps2 = con.prepareStatement("delete from usercart where username=?");
+
+					ps2.setString(1, userName);
+
+					ps2.executeUpdate();
+				}
 			}
+
+		} finally {
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(ps2);
+			DBUtil.closeConnection(rs);
 		}
+	}
 
-		return status;
+	/*
+	 * Gives back the leased units a checkout took, so it can run again or be
+	 * dropped.
+	 */
+	static void undo(Checkout checkout) {
+		for (CheckoutLine line : checkout.lines) {
+			if (line.leased)
+				// the units came from memory, not from the rolled back update
+				ProductServiceImpl.getInventory().restock(line.prodId, line.quantity);
+		}
+		checkout.lines.clear();
+		checkout.ordered = false;
+	}
+
+	/*
+	 * Brings the caches in line with the outcome, once the transaction has
+	 * ended.
+	 */
+	static void completed(Checkout checkout) {
+		if (!checkout.ordered) {
+			undo(checkout);
+			return;
+		}
+
+		for (CheckoutLine line : checkout.lines)
+			ProductServiceImpl.adjustCachedQuantity(line.prodId, -line.quantity);
+
+		CartServiceImpl.cartCheckedOut(checkout.userName);
+
+		checkout.status = "Order Placed Successfully!";
+	}
+
+	/*
+	 * Takes the units of every line out of stock: from a hot product's leased
+	 * units where possible, the rest with one conditional update over all
+	 * remaining rows.
+	 *
+	 * @return a line the stock does not cover, or null if all were taken
+	 */
+	private static CheckoutLine takeStock(Connection con, List<CheckoutLine> lines) throws SQLException {
+		InventoryEngine inventory = ProductServiceImpl.getInventory();
+
+		List<CheckoutLine> fromRows = new ArrayList<CheckoutLine>();
+		for (CheckoutLine line : lines) {
+			line.leased = inventory.takeLeased(line.prodId, line.quantity);
+			if (!line.leased)
+				fromRows.add(line);
+		}
+
+		if (fromRows.isEmpty())
+			return null;
+
+		int size = ProductServiceImpl.inListSize(fromRows.size());
+
+		StringBuilder cases = new StringBuilder("case pid");
+		for (int i = 0; i < size; i++)
+			cases.append(" when ? then ?");
+		cases.append(" end");
+
+		StringBuilder sql = new StringBuilder("update product set pquantity=pquantity - ").append(cases)
+				.append(" where pid in (");
+		for (int i = 0; i < size; i++)
+			sql.append(i == 0 ? "?" : ",?");
+		sql.append(") and pquantity >= ").append(cases);
+
+		int k;
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement(sql.toString());
+
+			// padding repeats the last line, which does not change the result
+			for (int i = 0; i < size; i++) {
+				CheckoutLine line = fromRows.get(Math.min(i, fromRows.size() - 1));
+				ps.setString(2 * i + 1, line.prodId);
+				ps.setInt(2 * i + 2, line.quantity);
+				ps.setString(2 * size + i + 1, line.prodId);
+				ps.setString(3 * size + 2 * i + 1, line.prodId);
+				ps.setInt(3 * size + 2 * i + 2, line.quantity);
+			}
+			k = ps.executeUpdate();
+		} finally {
+			DBUtil.closeConnection(ps);
+		}
+
+		if (k == fromRows.size())
+			return null;
+
+		for (CheckoutLine line : fromRows) {
+			if (line.stock < line.quantity)
+				return line;
+		}
+		return fromRows.get(0);
+	}
+
+	private static void insertOrders(Connection con, String transactionId, List<CheckoutLine> lines) throws SQLException {
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement("insert into orders values(?,?,?,?,?)");
+
+			for (CheckoutLine line : lines) {
+				ps.setString(1, transactionId);
+				ps.setString(2, line.prodId);
+				ps.setInt(3, line.quantity);
+				ps.setDouble(4, line.price * line.quantity);
+				ps.setInt(5, 0);
+				ps.addBatch();
+			}
+
+			ps.executeBatch();
+
+		} finally {
+			DBUtil.closeConnection(ps);
+		}
 	}
 
 	@Override
@@ -99,6 +314,9 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return flag;
 	}
 
@@ -128,44 +346,63 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		return flag;
 	}
 
 	@Override
 	public int countSoldItem(String prodId) {
-		int count = 0;
+		return SOLD_COUNTS.get(prodId);
+	}
+
+	@Override
+	public StringIntMap getSoldCounts(Collection<String> prodIds) {
+		return SOLD_COUNTS.get(prodIds);
+	}
+
+	@Override
+	public List<OrderBean> getAllOrders() {
+		List<OrderBean> orderList = new ArrayList<OrderBean>();
 
 		Connection con = DBUtil.provideConnection();
 
 		PreparedStatement ps = null;
-
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select sum(quantity) from orders where prodid=?");
 
-			ps.setString(1, prodId);
+			ps = con.prepareStatement("select * from orders");
 
 			rs = ps.executeQuery();
 
-			if (rs.next())
-				count = rs.getInt(1);
+			while (rs.next()) {
+
+				OrderBean order = new OrderBean(rs.getString("orderid"), rs.getString("prodid"), rs.getInt("quantity"),
+						rs.getDouble("amount"), rs.getInt("shipped"));
+
+				orderList.add(order);
+
+			}
 
 		} catch (SQLException e) {
-			count = 0;
+
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
-		return count;
+		return orderList;
 	}
 
 	@Override
-	public List<OrderBean> getAllOrders() {
-		List<OrderBean> orderList = new ArrayList<OrderBean>();
+	public PageBean<ShipmentBean> getShipmentsPage(boolean shipped, String cursor, int pageSize) {
+		List<ShipmentBean> shipments = new ArrayList<ShipmentBean>();
+
+		String[] key = CursorUtil.decode(cursor, 2);
 
 		Connection con = DBUtil.provideConnection();
 
@@ -173,26 +410,50 @@ public class OrderServiceImpl implements OrderService {
 		ResultSet rs = null;
 
 		try {
-
-			ps = con.prepareStatement("select * from orders");
+			// shipped is only ever 0 or 1: an equality keeps the
+			// (shipped, orderid, prodid) index in order from the cursor on
+			String sql = "select o.orderid, o.prodid, o.quantity, o.amount, o.shipped, t.username, u.address"
+					+ " from orders o left join transactions t on t.transid=o.orderid"
+					+ " left join user u on u.email=t.username where o.shipped=?"
+					+ (key == null ? "" : " and (o.orderid > ? or (o.orderid = ? and o.prodid > ?))")
+					+ " order by o.orderid, o.prodid limit ?";
+
+			ps = con.prepareStatement(sql);
+
+			ps.setInt(1, shipped ? 1 : 0);
+
+			int index = 2;
+			if (key != null) {
+				ps.setString(index++, key[0]);
+				ps.setString(index++, key[0]);
+				ps.setString(index++, key[1]);
+			}
+			ps.setInt(index, pageSize + 1);
 
 			rs = ps.executeQuery();
 
 			while (rs.next()) {
-
-				OrderBean order = new OrderBean(rs.getString("orderid"), rs.getString("prodid"), rs.getInt("quantity"),
-						rs.getDouble("amount"), rs.getInt("shipped"));
-
-				orderList.add(order);
-
+				shipments.add(new ShipmentBean(rs.getString("orderid"), rs.getString("prodid"), rs.getInt("quantity"),
+						rs.getDouble("amount"), rs.getInt("shipped"), rs.getString("username"),
+						rs.getString("address")));
 			}
 
 		} catch (SQLException e) {
-
 			e.printStackTrace();
 		}
 
-		return orderList;
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		String nextCursor = null;
+		if (shipments.size() > pageSize) {
+			shipments.remove(pageSize);
+			ShipmentBean last = shipments.get(pageSize - 1);
+			nextCursor = CursorUtil.encode(last.getTransactionId(), last.getProductId());
+		}
+
+		return new PageBean<ShipmentBean>(shipments, nextCursor);
 	}
 
 	@Override
@@ -225,6 +486,10 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
 		return orderList;
 	}
 
@@ -240,7 +505,7 @@ public class OrderServiceImpl implements OrderService {
 		try {
 
 			ps = con.prepareStatement(
-					"SELECT  p.pid as prodid, o.orderid as orderid, o.shipped as shipped, p.image as image, p.pname as pname, o.quantity as qty, o.amount as amount, t.time as time FROM orders o, product p, transactions t where o.orderid=t.transid and o.orderid = t.transid and p.pid=o.prodid and t.username=?");
+					"SELECT  p.pid as prodid, o.orderid as orderid, o.shipped as shipped, p.pname as pname, o.quantity as qty, o.amount as amount, t.time as time FROM orders o, product p, transactions t where o.orderid=t.transid and o.orderid = t.transid and p.pid=o.prodid and t.username=?");
 			ps.setString(1, userEmailId);
 			rs = ps.executeQuery();
 
@@ -248,7 +513,6 @@ public class OrderServiceImpl implements OrderService {
 
 				OrderDetails order = new OrderDetails();
 				order.setOrderId(rs.getString("orderid"));
-				order.setProdImage(rs.getAsciiStream("image"));
 				order.setProdName(rs.getString("pname"));
 				order.setQty(rs.getString("qty"));
 				order.setAmount(rs.getString("amount"));
@@ -264,9 +528,104 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
 		return orderList;
 	}
 
+	@Override
+	public PageBean<OrderDetails> getOrderDetailsPage(String userEmailId, String cursor, int pageSize) {
+		List<OrderDetails> orderList = new ArrayList<OrderDetails>();
+
+		// the cursor time is empty for a transaction without one; those sort
+		// last, after every dated one
+		String[] key = CursorUtil.decode(cursor, 2);
+		Timestamp beforeTime = null;
+		if (key != null && !key[0].isEmpty()) {
+			try {
+				beforeTime = new Timestamp(Long.parseLong(key[0]));
+			} catch (NumberFormatException e) {
+				key = null;
+			}
+		}
+
+		String after = "";
+		if (key != null)
+			after = beforeTime == null ? " and time is null and transid < ?"
+					: " and (time < ? or (time = ? and transid < ?) or time is null)";
+
+		String nextCursor = null;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			// pages by transaction, newest first, off the (username, time)
+			// index; the image is served by ShowImage and never read here
+			ps = con.prepareStatement("select t.transid, t.time, o.prodid, o.shipped, o.quantity, o.amount, p.pname"
+					+ " from (select transid, time from transactions where username=?"
+					+ after
+					+ " order by time desc, transid desc limit ?) t"
+					+ " join orders o on o.orderid=t.transid left join product p on p.pid=o.prodid"
+					+ " order by t.time desc, t.transid desc, o.prodid");
+
+			int index = 1;
+			ps.setString(index++, userEmailId);
+			if (key != null) {
+				if (beforeTime != null) {
+					ps.setTimestamp(index++, beforeTime);
+					ps.setTimestamp(index++, beforeTime);
+				}
+				ps.setString(index++, key[1]);
+			}
+			ps.setInt(index, pageSize + 1);
+
+			rs = ps.executeQuery();
+
+			int transactions = 0;
+			String lastTransId = null;
+			Timestamp lastTime = null;
+
+			while (rs.next()) {
+				String transId = rs.getString("transid");
+				if (!transId.equals(lastTransId) && ++transactions > pageSize) {
+					// lines of the one extra transaction only tell there is a next page
+					nextCursor = CursorUtil.encode(lastTime == null ? "" : String.valueOf(lastTime.getTime()),
+							lastTransId);
+					break;
+				}
+				lastTransId = transId;
+				lastTime = rs.getTimestamp("time");
+
+				OrderDetails order = new OrderDetails();
+				order.setOrderId(transId);
+				// the product may have been removed since
+				String prodName = rs.getString("pname");
+				order.setProdName(prodName == null ? REMOVED_PRODUCT_NAME : prodName);
+				order.setQty(rs.getString("quantity"));
+				order.setAmount(rs.getString("amount"));
+				order.setTime(lastTime);
+				order.setProductId(rs.getString("prodid"));
+				order.setShipped(rs.getInt("shipped"));
+				orderList.add(order);
+			}
+
+		} catch (SQLException e) {
+
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		return new PageBean<OrderDetails>(orderList, nextCursor);
+	}
+
 	@Override
 	public String shipNow(String orderId, String prodId) {
 		String status = "FAILURE";
@@ -292,10 +651,143 @@ public class OrderServiceImpl implements OrderService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
 
 		return status;
 	}
 
+
+	@Override
+	public List<ShipmentBean> shipOrders(List<ShipmentBean> lines) {
+		Map<String, ShipmentBean> shipped = new HashMap<String, ShipmentBean>();
+
+		int max = ProductServiceImpl.MAX_IN_LIST_SIZE;
+		for (int from = 0; from < lines.size(); from += max)
+			shipped.putAll(shipChunk(lines.subList(from, Math.min(from + max, lines.size()))));
+
+		List<ShipmentBean> results = new ArrayList<ShipmentBean>(lines.size());
+		for (ShipmentBean line : lines)
+			results.add(shipped.remove(line.getTransactionId() + "\n" + line.getProductId()));
+		return results;
+	}
+
+	/*
+	 * Locks the unshipped ones among the lines, then marks them shipped with a
+	 * single update, in one transaction.
+	 */
+	private Map<String, ShipmentBean> shipChunk(List<ShipmentBean> lines) {
+		Map<String, ShipmentBean> shipped = new HashMap<String, ShipmentBean>();
+
+		int size = ProductServiceImpl.inListSize(lines.size());
+
+		StringBuilder in = new StringBuilder("(o.orderid, o.prodid) in (");
+		for (int i = 0; i < size; i++)
+			in.append(i == 0 ? "(?,?)" : ",(?,?)");
+		in.append(")");
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+		ResultSet rs = null;
+
+		try {
+			con.setAutoCommit(false);
+
+			ps = con.prepareStatement("select o.orderid, o.prodid, o.quantity, o.amount, t.username, u.address, u.name"
+					+ " from orders o left join transactions t on t.transid=o.orderid"
+					+ " left join user u on u.email=t.username where o.shipped=0 and " + in + " for update of o");
+			setLinePairs(ps, lines, size);
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+				ShipmentBean line = new ShipmentBean(rs.getString("orderid"), rs.getString("prodid"),
+						rs.getInt("quantity"), rs.getDouble("amount"), 1, rs.getString("username"),
+						rs.getString("address"));
+				line.setUserName(rs.getString("name"));
+				shipped.put(line.getTransactionId() + "\n" + line.getProductId(), line);
+			}
+
+			if (!shipped.isEmpty()) {
+				ps2 = con.prepareStatement("update orders o set o.shipped=1 where o.shipped=0 and " + in);
+				setLinePairs(ps2, lines, size);
+
+				ps2.executeUpdate();
+			}
+
+			con.commit();
+
+		} catch (SQLException e) {
+			shipped.clear();
+			e.printStackTrace();
+			try {
+				con.rollback();
+			} catch (SQLException e1) {
+				e1.printStackTrace();
+			}
+		}
+
+		try {
+			con.setAutoCommit(true);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		return shipped;
+	}
+
+	// padding repeats the last line, which does not change the result
+	private static void setLinePairs(PreparedStatement ps, List<ShipmentBean> lines, int size) throws SQLException {
+		for (int i = 0; i < size; i++) {
+			ShipmentBean line = lines.get(Math.min(i, lines.size() - 1));
+			ps.setString(2 * i + 1, line.getTransactionId());
+			ps.setString(2 * i + 2, line.getProductId());
+		}
+	}
+
+	/*
+	 * One paymentSuccess call on its way through checkout.
+	 */
+	static final class Checkout {
+		static final String FAILED = "Order Placement Failed!";
+
+		final String userName;
+		final TransactionBean transaction;
+		final List<CheckoutLine> lines = new ArrayList<CheckoutLine>();
+		volatile boolean ordered;
+		volatile String status = FAILED;
+		// set by the group committer; guarded by this
+		boolean done;
+
+		Checkout(String userName, TransactionBean transaction) {
+			this.userName = userName;
+			this.transaction = transaction;
+		}
+	}
+
+	static final class CheckoutLine {
+		final String prodId;
+		final int quantity;
+		// null if the product no longer exists
+		final String prodName;
+		final double price;
+		final int stock;
+		// taken from the inventory's leased units rather than the product row
+		boolean leased;
+
+		CheckoutLine(String prodId, int quantity, String prodName, double price, int stock) {
+			this.prodId = prodId;
+			this.quantity = quantity;
+			this.prodName = prodName;
+			this.price = price;
+			this.stock = stock;
+		}
+	}
 }
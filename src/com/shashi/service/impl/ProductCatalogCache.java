@@ -0,0 +1,363 @@
+package com.shashi.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.shashi.beans.ProductBean;
+import com.shashi.utility.DBUtil;
+
+/**
+ * Read-through cache of the product catalog (summary beans, no image).
+ *
+ * When the whole catalog fits in catalog.cache.maxSize it is held as one
+ * snapshot ordered by pid, with lazily built per-type views, so listing pages
+ * never hit MySQL. Larger catalogs fall back to an LRU of single products.
+ * ProductServiceImpl writes every change through, and entries expire after
+ * catalog.cache.ttlSeconds so edits made by another node are picked up.
+ *
+ * Beans are copied on the way in and out; callers are free to modify what
+ * they get back.
+ */
+public class ProductCatalogCache {
+
+	private final int maxSize;
+	private final long ttlMillis;
+
+	private volatile Snapshot snapshot;
+	private volatile long oversizedAt;
+	private final Map<String, Entry> recent;
+
+	public ProductCatalogCache(int maxSize, long ttlMillis) {
+		this.maxSize = maxSize;
+		this.ttlMillis = ttlMillis;
+		this.recent = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > ProductCatalogCache.this.maxSize;
+			}
+		};
+	}
+
+	public static ProductCatalogCache fromConfig() {
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+		int maxSize = DBUtil.getInt(rb, "catalog.cache.maxSize", 5000);
+		int ttlSeconds = DBUtil.getInt(rb, "catalog.cache.ttlSeconds", 300);
+		return new ProductCatalogCache(maxSize, ttlSeconds * 1000L);
+	}
+
+	public boolean isEnabled() {
+		return maxSize > 0 && ttlMillis > 0;
+	}
+
+	/**
+	 * @return false while the last full load did not fit in maxSize
+	 */
+	public boolean canHoldCatalog() {
+		return isEnabled() && isExpired(oversizedAt);
+	}
+
+	/**
+	 * @return the whole catalog in pid order, or null if it is not cached
+	 */
+	public List<ProductBean> getAll() {
+		Snapshot snap = currentSnapshot();
+		if (snap == null)
+			return null;
+		return copyAll(snap.products.values());
+	}
+
+	/**
+	 * @return products whose type contains the given text (case-insensitive),
+	 *         or null if the catalog is not cached
+	 */
+	public List<ProductBean> getByType(String type) {
+		Snapshot snap = currentSnapshot();
+		if (snap == null)
+			return null;
+
+		List<String> ids = typeView(snap, type);
+
+		List<ProductBean> products = new ArrayList<ProductBean>(ids.size());
+		for (String id : ids) {
+			ProductBean product = snap.products.get(id);
+			if (product != null)
+				products.add(copy(product));
+		}
+		return products;
+	}
+
+	/**
+	 * @return up to limit products with a pid greater than afterPid (all
+	 *         products if it is null), in pid order; null if the catalog is not
+	 *         cached
+	 */
+	public List<ProductBean> getPage(String afterPid, int limit) {
+		Snapshot snap = currentSnapshot();
+		if (snap == null)
+			return null;
+
+		NavigableMap<String, ProductBean> tail = afterPid == null ? snap.products
+				: snap.products.tailMap(afterPid, false);
+
+		List<ProductBean> products = new ArrayList<ProductBean>(limit);
+		for (ProductBean product : tail.values()) {
+			if (products.size() == limit)
+				break;
+			products.add(copy(product));
+		}
+		return products;
+	}
+
+	/**
+	 * Same as {@link #getPage(String, int)}, restricted to a product type.
+	 */
+	public List<ProductBean> getByTypePage(String type, String afterPid, int limit) {
+		Snapshot snap = currentSnapshot();
+		if (snap == null)
+			return null;
+
+		List<String> ids = typeView(snap, type);
+
+		int start = 0;
+		if (afterPid != null) {
+			int pos = Collections.binarySearch(ids, afterPid);
+			start = pos >= 0 ? pos + 1 : -pos - 1;
+		}
+
+		List<ProductBean> products = new ArrayList<ProductBean>(limit);
+		for (int i = start; i < ids.size() && products.size() < limit; i++) {
+			ProductBean product = snap.products.get(ids.get(i));
+			if (product != null)
+				products.add(copy(product));
+		}
+		return products;
+	}
+
+	/**
+	 * @return the cached product, or null on a miss
+	 */
+	public ProductBean get(String prodId) {
+		if (!isEnabled() || prodId == null)
+			return null;
+
+		Snapshot snap = currentSnapshot();
+		if (snap != null) {
+			ProductBean product = snap.products.get(prodId);
+			if (product != null)
+				return copy(product);
+		}
+
+		synchronized (recent) {
+			Entry entry = recent.get(prodId);
+			if (entry == null)
+				return null;
+			if (isExpired(entry.loadedAt)) {
+				recent.remove(prodId);
+				return null;
+			}
+			return copy(entry.product);
+		}
+	}
+
+	/**
+	 * Replaces the cached catalog with a full load from the database.
+	 */
+	public void putAll(List<ProductBean> products) {
+		if (!isEnabled())
+			return;
+		if (products.size() > maxSize) {
+			oversizedAt = System.currentTimeMillis();
+			return;
+		}
+
+		ConcurrentSkipListMap<String, ProductBean> map = new ConcurrentSkipListMap<String, ProductBean>();
+		for (ProductBean product : products)
+			map.put(product.getProdId(), copy(product));
+
+		snapshot = new Snapshot(map, System.currentTimeMillis());
+		synchronized (recent) {
+			recent.clear();
+		}
+	}
+
+	/**
+	 * Adds or replaces one product after it was loaded or written.
+	 */
+	public void put(ProductBean product) {
+		if (!isEnabled() || product == null)
+			return;
+
+		ProductBean cached = copy(product);
+
+		Snapshot snap = snapshot;
+		if (snap != null) {
+			ProductBean previous = snap.products.put(cached.getProdId(), cached);
+			if (previous == null || !sameType(previous, cached))
+				snap.resetViews();
+			if (snap.products.size() > maxSize) {
+				oversizedAt = System.currentTimeMillis();
+				snapshot = null;
+			}
+		}
+
+		synchronized (recent) {
+			recent.put(cached.getProdId(), new Entry(cached, System.currentTimeMillis()));
+		}
+	}
+
+	/**
+	 * Adds delta to the cached stock of a product, not going below 0, as one
+	 * atomic step, so concurrent sales of the same product all count. Does
+	 * nothing if the product is not cached; its expiry is left as it was.
+	 */
+	public void adjustQuantity(String prodId, int delta) {
+		if (!isEnabled() || prodId == null)
+			return;
+
+		Snapshot snap = snapshot;
+		if (snap != null) {
+			// may run more than once under contention, so it builds a new bean
+			snap.products.computeIfPresent(prodId, (id, product) -> {
+				ProductBean adjusted = copy(product);
+				adjusted.setProdQuantity(Math.max(0, product.getProdQuantity() + delta));
+				return adjusted;
+			});
+		}
+
+		synchronized (recent) {
+			Entry entry = recent.get(prodId);
+			if (entry != null)
+				entry.product.setProdQuantity(Math.max(0, entry.product.getProdQuantity() + delta));
+		}
+	}
+
+	public void remove(String prodId) {
+		Snapshot snap = snapshot;
+		if (snap != null && snap.products.remove(prodId) != null)
+			snap.resetViews();
+
+		synchronized (recent) {
+			recent.remove(prodId);
+		}
+	}
+
+	public void clear() {
+		snapshot = null;
+		synchronized (recent) {
+			recent.clear();
+		}
+	}
+
+	/*
+	 * Ids of the products of a type, in pid order. Only the types products
+	 * actually have are kept, so the type parameter cannot grow the map; any
+	 * other text is matched on every call. A concurrent write swaps in fresh
+	 * views, so a view computed from older data can only land in the
+	 * discarded ones.
+	 */
+	private static List<String> typeView(Snapshot snap, String type) {
+		String key = type.toLowerCase(Locale.ENGLISH);
+		TypeViews views = snap.typeViews;
+		List<String> ids = views.ids.get(key);
+		if (ids == null) {
+			ids = new ArrayList<String>();
+			for (ProductBean product : snap.products.values()) {
+				if (product.getProdType() != null
+						&& product.getProdType().toLowerCase(Locale.ENGLISH).contains(key))
+					ids.add(product.getProdId());
+			}
+			if (views.types(snap).contains(key))
+				views.ids.put(key, ids);
+		}
+		return ids;
+	}
+
+	private Snapshot currentSnapshot() {
+		Snapshot snap = snapshot;
+		if (snap == null)
+			return null;
+		if (isExpired(snap.loadedAt)) {
+			snapshot = null;
+			return null;
+		}
+		return snap;
+	}
+
+	private boolean isExpired(long loadedAt) {
+		return System.currentTimeMillis() - loadedAt > ttlMillis;
+	}
+
+	private static boolean sameType(ProductBean a, ProductBean b) {
+		return a.getProdType() == null ? b.getProdType() == null : a.getProdType().equals(b.getProdType());
+	}
+
+	private static List<ProductBean> copyAll(Collection<ProductBean> products) {
+		List<ProductBean> copies = new ArrayList<ProductBean>(products.size());
+		for (ProductBean product : products)
+			copies.add(copy(product));
+		return copies;
+	}
+
+	static ProductBean copy(ProductBean product) {
+		return new ProductBean(product.getProdId(), product.getProdName(), product.getProdType(),
+				product.getProdInfo(), product.getProdPrice(), product.getProdQuantity(), null);
+	}
+
+	private static final class Snapshot {
+		final ConcurrentSkipListMap<String, ProductBean> products;
+		final long loadedAt;
+		volatile TypeViews typeViews = new TypeViews();
+
+		Snapshot(ConcurrentSkipListMap<String, ProductBean> products, long loadedAt) {
+			this.products = products;
+			this.loadedAt = loadedAt;
+		}
+
+		void resetViews() {
+			typeViews = new TypeViews();
+		}
+	}
+
+	private static final class TypeViews {
+		final Map<String, List<String>> ids = new ConcurrentHashMap<String, List<String>>();
+
+		// the distinct lower case types, built on first use
+		private volatile Set<String> types;
+
+		Set<String> types(Snapshot snap) {
+			Set<String> known = types;
+			if (known == null) {
+				known = new HashSet<String>();
+				for (ProductBean product : snap.products.values()) {
+					if (product.getProdType() != null)
+						known.add(product.getProdType().toLowerCase(Locale.ENGLISH));
+				}
+				types = known;
+			}
+			return known;
+		}
+	}
+
+	private static final class Entry {
+		final ProductBean product;
+		final long loadedAt;
+
+		Entry(ProductBean product, long loadedAt) {
+			this.product = product;
+			this.loadedAt = loadedAt;
+		}
+	}
+}
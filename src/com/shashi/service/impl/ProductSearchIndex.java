@@ -0,0 +1,241 @@
+package com.shashi.service.impl;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import com.shashi.beans.ProductBean;
+import com.shashi.utility.DBUtil;
+
+/**
+ * In-memory inverted index over product name, type and info.
+ *
+ * Text is case-folded, stripped of accents and split on anything that is not a
+ * letter or digit. A query matches a product only if every query term matches
+ * one of its terms, either exactly or as a prefix ("iph" finds "iphone").
+ * Results are ranked by a field-weighted term frequency score, exact matches
+ * counting double.
+ */
+public class ProductSearchIndex {
+
+	private static final int NAME_WEIGHT = 3;
+	private static final int TYPE_WEIGHT = 2;
+	private static final int INFO_WEIGHT = 1;
+
+	private static final Pattern SPLIT = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+	private final long refreshMillis;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<String, Map<String, Integer>>();
+	private final Map<String, Set<String>> documentTerms = new HashMap<String, Set<String>>();
+	private volatile long builtAt;
+
+	public ProductSearchIndex(long refreshMillis) {
+		this.refreshMillis = refreshMillis;
+	}
+
+	public static ProductSearchIndex fromConfig() {
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+		int refreshSeconds = DBUtil.getInt(rb, "search.index.refreshSeconds", 300);
+		return new ProductSearchIndex(refreshSeconds * 1000L);
+	}
+
+	/**
+	 * @return true if the index was never built or is older than the refresh
+	 *         interval, so changes made on other nodes get picked up
+	 */
+	public boolean needsRebuild() {
+		return builtAt == 0 || System.currentTimeMillis() - builtAt > refreshMillis;
+	}
+
+	public void rebuild(Collection<ProductBean> products) {
+		lock.writeLock().lock();
+		try {
+			postings.clear();
+			documentTerms.clear();
+			for (ProductBean product : products)
+				add(product);
+			builtAt = System.currentTimeMillis();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void put(ProductBean product) {
+		lock.writeLock().lock();
+		try {
+			removeDocument(product.getProdId());
+			add(product);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(String prodId) {
+		lock.writeLock().lock();
+		try {
+			removeDocument(prodId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return ids of the products matching every term of the query, best match
+	 *         first; empty if the query has no searchable terms
+	 */
+	public List<String> search(String query) {
+		List<Hit> hits = searchHits(query);
+		List<String> ids = new ArrayList<String>(hits.size());
+		for (Hit hit : hits)
+			ids.add(hit.getProdId());
+		return ids;
+	}
+
+	/**
+	 * Same as {@link #search(String)} with the ranking score of every hit,
+	 * ordered by score descending then pid ascending.
+	 */
+	public List<Hit> searchHits(String query) {
+		List<String> terms = tokenize(query);
+		if (terms.isEmpty())
+			return Collections.emptyList();
+
+		Map<String, Integer> scores = null;
+
+		lock.readLock().lock();
+		try {
+			for (String term : new HashSet<String>(terms)) {
+				Map<String, Integer> matches = match(term);
+				if (scores == null) {
+					scores = matches;
+				} else {
+					scores.keySet().retainAll(matches.keySet());
+					for (Map.Entry<String, Integer> entry : scores.entrySet())
+						entry.setValue(entry.getValue() + matches.get(entry.getKey()));
+				}
+				if (scores.isEmpty())
+					return Collections.emptyList();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		List<Hit> hits = new ArrayList<Hit>(scores.size());
+		for (Map.Entry<String, Integer> entry : scores.entrySet())
+			hits.add(new Hit(entry.getKey(), entry.getValue()));
+		Collections.sort(hits);
+		return hits;
+	}
+
+	/**
+	 * @return the position of the first hit ranked after (score, prodId) in a
+	 *         list returned by {@link #searchHits(String)}
+	 */
+	public static int seekAfter(List<Hit> hits, int score, String prodId) {
+		int pos = Collections.binarySearch(hits, new Hit(prodId, score));
+		return pos >= 0 ? pos + 1 : -pos - 1;
+	}
+
+	public static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<String>();
+		if (text == null)
+			return tokens;
+
+		String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+		folded = MARKS.matcher(folded).replaceAll("").toLowerCase(Locale.ROOT);
+
+		for (String token : SPLIT.split(folded)) {
+			if (!token.isEmpty())
+				tokens.add(token);
+		}
+		return tokens;
+	}
+
+	private Map<String, Integer> match(String term) {
+		Map<String, Integer> matches = new HashMap<String, Integer>();
+		for (Map.Entry<String, Map<String, Integer>> entry : postings
+				.subMap(term, true, term + Character.MAX_VALUE, false).entrySet()) {
+			int factor = entry.getKey().equals(term) ? 2 : 1;
+			for (Map.Entry<String, Integer> posting : entry.getValue().entrySet())
+				matches.merge(posting.getKey(), posting.getValue() * factor, Integer::sum);
+		}
+		return matches;
+	}
+
+	private void add(ProductBean product) {
+		String prodId = product.getProdId();
+		Map<String, Integer> weights = new HashMap<String, Integer>();
+
+		addField(weights, product.getProdName(), NAME_WEIGHT);
+		addField(weights, product.getProdType(), TYPE_WEIGHT);
+		addField(weights, product.getProdInfo(), INFO_WEIGHT);
+
+		for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+			Map<String, Integer> docs = postings.get(entry.getKey());
+			if (docs == null) {
+				docs = new HashMap<String, Integer>();
+				postings.put(entry.getKey(), docs);
+			}
+			docs.put(prodId, entry.getValue());
+		}
+		documentTerms.put(prodId, weights.keySet());
+	}
+
+	private static void addField(Map<String, Integer> weights, String text, int weight) {
+		for (String token : tokenize(text))
+			weights.merge(token, weight, Integer::sum);
+	}
+
+	private void removeDocument(String prodId) {
+		Set<String> terms = documentTerms.remove(prodId);
+		if (terms == null)
+			return;
+
+		for (String term : terms) {
+			Map<String, Integer> docs = postings.get(term);
+			if (docs != null) {
+				docs.remove(prodId);
+				if (docs.isEmpty())
+					postings.remove(term);
+			}
+		}
+	}
+
+	public static final class Hit implements Comparable<Hit> {
+		private final String prodId;
+		private final int score;
+
+		Hit(String prodId, int score) {
+			this.prodId = prodId;
+			this.score = score;
+		}
+
+		public String getProdId() {
+			return prodId;
+		}
+
+		public int getScore() {
+			return score;
+		}
+
+		@Override
+		public int compareTo(Hit other) {
+			int cmp = Integer.compare(other.score, score);
+			return cmp != 0 ? cmp : prodId.compareTo(other.prodId);
+		}
+	}
+}
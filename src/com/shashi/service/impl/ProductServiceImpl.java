@@ -1,22 +1,93 @@
 package com.shashi.service.impl;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.digest.DigestUtils;
 
 import com.shashi.beans.DemandBean;
+import com.shashi.beans.PageBean;
 import com.shashi.beans.ProductBean;
 import com.shashi.service.ProductService;
+import com.shashi.utility.CursorUtil;
 import com.shashi.utility.DBUtil;
 import com.shashi.utility.IDUtil;
+import com.shashi.utility.ImageCache;
+import com.shashi.utility.ImageStore;
+import com.shashi.utility.ImageVariant;
+import com.shashi.utility.InventoryEngine;
 import com.shashi.utility.MailMessage;
 
 public class ProductServiceImpl implements ProductService {
 
+	/*
+	 * Every column except the image BLOB. Listing and lookup queries use this
+	 * projection; image bytes are only read through getImage(prodId).
+	 */
+	private static final String SUMMARY_COLUMNS = "pid, pname, ptype, pinfo, pprice, pquantity";
+
+	private static final ProductCatalogCache CATALOG = ProductCatalogCache.fromConfig();
+
+	private static final ProductSearchIndex SEARCH_INDEX = ProductSearchIndex.fromConfig();
+
+	/*
+	 * Largest IN (...) list sent in one query. Shorter lists are padded up to
+	 * the next of these sizes so only a handful of distinct statements reach
+	 * the statement cache.
+	 */
+	private static final int[] IN_LIST_SIZES = { 1, 4, 16, 64, 256 };
+
+	static final int MAX_IN_LIST_SIZE = IN_LIST_SIZES[IN_LIST_SIZES.length - 1];
+
+	/*
+	 * Content hash (ETag) of every product image served so far, so ShowImage
+	 * can answer conditional requests without reading the BLOB. Entries are
+	 * dropped when the image is replaced on this node and expire like the
+	 * catalog cache for changes made on other nodes.
+	 */
+	private static final Map<String, ImageTag> IMAGE_TAGS = new ConcurrentHashMap<String, ImageTag>();
+
+	private static final long IMAGE_TAG_TTL_MILLIS = DBUtil.getInt(ResourceBundle.getBundle("application"),
+			"catalog.cache.ttlSeconds", 300) * 1000L;
+
+	private static final ImageCache IMAGE_CACHE = ImageCache.fromConfig();
+
+	private static final ImageStore IMAGE_STORE = ImageStore.fromConfig();
+
+	private static final InventoryEngine INVENTORY = InventoryEngine.fromConfig();
+
+	public static final int PAGE_SIZE = DBUtil.getInt(ResourceBundle.getBundle("application"), "catalog.pageSize",
+			24);
+
+	private static ProductBean mapSummary(ResultSet rs) throws SQLException {
+		ProductBean product = new ProductBean();
+
+		product.setProdId(rs.getString("pid"));
+		product.setProdName(rs.getString("pname"));
+		product.setProdType(rs.getString("ptype"));
+		product.setProdInfo(rs.getString("pinfo"));
+		product.setProdPrice(rs.getDouble("pprice"));
+		// units leased to the inventory engine are off the row but still for sale
+		product.setProdQuantity(rs.getInt("pquantity") + INVENTORY.leasedUnits(product.getProdId()));
+
+		return product;
+	}
+
 	@Override
 	public String addProduct(String prodName, String prodType, String prodInfo, double prodPrice, int prodQuantity,
 			InputStream prodImage) {
@@ -37,19 +108,32 @@ public class ProductServiceImpl implements ProductService {
 		if (product.getProdId() == null)
 			product.setProdId(IDUtil.generateId());
 
+		String imageHash = null;
+		try {
+			imageHash = storeUpload(product.getProdImage());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return "Error: " + e.getMessage();
+		}
+
 		Connection con = DBUtil.provideConnection();
 
 		PreparedStatement ps = null;
 
 		try {
-			ps = con.prepareStatement("insert into product values(?,?,?,?,?,?,?);");
+			ps = con.prepareStatement("insert into product (pid, pname, ptype, pinfo, pprice, pquantity, image,"
+					+ " image_hash) values(?,?,?,?,?,?,?,?)");
 			ps.setString(1, product.getProdId());
 			ps.setString(2, product.getProdName());
 			ps.setString(3, product.getProdType());
 			ps.setString(4, product.getProdInfo());
 			ps.setDouble(5, product.getProdPrice());
 			ps.setInt(6, product.getProdQuantity());
-			ps.setBlob(7, product.getProdImage());
+			if (imageHash != null)
+				ps.setNull(7, Types.LONGVARBINARY);
+			else
+				ps.setBlob(7, product.getProdImage());
+			ps.setString(8, imageHash);
 
 			int k = ps.executeUpdate();
 
@@ -57,6 +141,8 @@ public class ProductServiceImpl implements ProductService {
 
 				status = "Product Added Successfully with Product Id: " + product.getProdId();
 
+				storeImageVariants(product.getProdId(), getImage(product.getProdId()));
+
 			} else {
 
 				status = "Product Updation Failed!";
@@ -67,8 +153,10 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		refreshCachedProduct(product.getProdId());
 
 		return status;
 	}
@@ -77,6 +165,8 @@ public class ProductServiceImpl implements ProductService {
 	public String removeProduct(String prodId) {
 		String status = "Product Removal Failed!";
 
+		INVENTORY.returnLease(prodId);
+
 		Connection con = DBUtil.provideConnection();
 
 		PreparedStatement ps = null;
@@ -97,6 +187,8 @@ public class ProductServiceImpl implements ProductService {
 
 				ps2.executeUpdate();
 
+				CartServiceImpl.invalidateCartCounts();
+
 			}
 
 		} catch (SQLException e) {
@@ -104,9 +196,14 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(con);
+
+		CATALOG.remove(prodId);
+		SEARCH_INDEX.remove(prodId);
+		IMAGE_TAGS.remove(prodId);
+		invalidateCachedImages(prodId);
 
 		return status;
 	}
@@ -122,34 +219,55 @@ public class ProductServiceImpl implements ProductService {
 			return status;
 		}
 
+		INVENTORY.returnLease(prevProduct.getProdId());
+
+		String imageHash = null;
+		try {
+			imageHash = storeUpload(updatedProduct.getProdImage());
+		} catch (IOException e) {
+			e.printStackTrace();
+			return "Error: " + e.getMessage();
+		}
+
 		Connection con = DBUtil.provideConnection();
 
 		PreparedStatement ps = null;
 
 		try {
 			ps = con.prepareStatement(
-					"update product set pname=?,ptype=?,pinfo=?,pprice=?,pquantity=?,image=? where pid=?");
+					"update product set pname=?,ptype=?,pinfo=?,pprice=?,pquantity=?,image=?,image_hash=? where pid=?");
 
 			ps.setString(1, updatedProduct.getProdName());
 			ps.setString(2, updatedProduct.getProdType());
 			ps.setString(3, updatedProduct.getProdInfo());
 			ps.setDouble(4, updatedProduct.getProdPrice());
 			ps.setInt(5, updatedProduct.getProdQuantity());
-			ps.setBlob(6, updatedProduct.getProdImage());
-			ps.setString(7, prevProduct.getProdId());
+			if (imageHash != null)
+				ps.setNull(6, Types.LONGVARBINARY);
+			else
+				ps.setBlob(6, updatedProduct.getProdImage());
+			ps.setString(7, imageHash);
+			ps.setString(8, prevProduct.getProdId());
 
 			int k = ps.executeUpdate();
 
-			if (k > 0)
+			if (k > 0) {
 				status = "Product Updated Successfully!";
 
+				storeImageVariants(prevProduct.getProdId(), getImage(prevProduct.getProdId()));
+			}
+
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		IMAGE_TAGS.remove(prevProduct.getProdId());
+		invalidateCachedImages(prevProduct.getProdId());
+		refreshCachedProduct(prevProduct.getProdId());
 
 		return status;
 	}
@@ -177,15 +295,22 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		refreshCachedProduct(prodId);
 
 		return status;
 	}
 
 	@Override
 	public List<ProductBean> getAllProducts() {
-		List<ProductBean> products = new ArrayList<ProductBean>();
+		List<ProductBean> products = CATALOG.getAll();
+
+		if (products != null)
+			return products;
+
+		products = new ArrayList<ProductBean>();
 
 		Connection con = DBUtil.provideConnection();
 
@@ -193,40 +318,42 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select * from product");
+			ps = con.prepareStatement("select " + SUMMARY_COLUMNS + " from product");
 
 			rs = ps.executeQuery();
 
 			while (rs.next()) {
 
-				ProductBean product = new ProductBean();
-
-				product.setProdId(rs.getString(1));
-				product.setProdName(rs.getString(2));
-				product.setProdType(rs.getString(3));
-				product.setProdInfo(rs.getString(4));
-				product.setProdPrice(rs.getDouble(5));
-				product.setProdQuantity(rs.getInt(6));
-				product.setProdImage(rs.getAsciiStream(7));
-
-				products.add(product);
+				products.add(mapSummary(rs));
 
 			}
 
+			CATALOG.putAll(products);
+
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return products;
 	}
 
 	@Override
 	public List<ProductBean> getAllProductsByType(String type) {
-		List<ProductBean> products = new ArrayList<ProductBean>();
+		List<ProductBean> products = CATALOG.getByType(type);
+
+		if (products == null && CATALOG.canHoldCatalog()) {
+			getAllProducts();
+			products = CATALOG.getByType(type);
+		}
+
+		if (products != null)
+			return products;
+
+		products = new ArrayList<ProductBean>();
 
 		Connection con = DBUtil.provideConnection();
 
@@ -234,23 +361,13 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("SELECT * FROM `shopping-cart`.product where lower(ptype) like ?;");
+			ps = con.prepareStatement("select " + SUMMARY_COLUMNS + " from product where lower(ptype) like ?");
 			ps.setString(1, "%" + type + "%");
 			rs = ps.executeQuery();
 
 			while (rs.next()) {
 
-				ProductBean product = new ProductBean();
-
-				product.setProdId(rs.getString(1));
-				product.setProdName(rs.getString(2));
-				product.setProdType(rs.getString(3));
-				product.setProdInfo(rs.getString(4));
-				product.setProdPrice(rs.getDouble(5));
-				product.setProdQuantity(rs.getInt(6));
-				product.setProdImage(rs.getAsciiStream(7));
-
-				products.add(product);
+				products.add(mapSummary(rs));
 
 			}
 
@@ -258,15 +375,102 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return products;
 	}
 
 	@Override
 	public List<ProductBean> searchAllProducts(String search) {
+		ensureSearchIndex();
+
+		if (ProductSearchIndex.tokenize(search).isEmpty())
+			return getAllProducts();
+
+		return new ArrayList<ProductBean>(getProductsByIds(SEARCH_INDEX.search(search)).values());
+	}
+
+	@Override
+	public PageBean<ProductBean> getProductsPage(String cursor, int pageSize) {
+		String[] key = CursorUtil.decode(cursor, 1);
+		String afterPid = key == null ? null : key[0];
+
+		List<ProductBean> products = CATALOG.getPage(afterPid, pageSize + 1);
+
+		if (products == null && CATALOG.canHoldCatalog()) {
+			getAllProducts();
+			products = CATALOG.getPage(afterPid, pageSize + 1);
+		}
+
+		if (products == null)
+			products = loadPage("select " + SUMMARY_COLUMNS + " from product where pid > ? order by pid limit ?",
+					null, afterPid, pageSize + 1);
+
+		return toPidPage(products, pageSize);
+	}
+
+	@Override
+	public PageBean<ProductBean> getProductsByTypePage(String type, String cursor, int pageSize) {
+		String[] key = CursorUtil.decode(cursor, 1);
+		String afterPid = key == null ? null : key[0];
+
+		List<ProductBean> products = CATALOG.getByTypePage(type, afterPid, pageSize + 1);
+
+		if (products == null && CATALOG.canHoldCatalog()) {
+			getAllProducts();
+			products = CATALOG.getByTypePage(type, afterPid, pageSize + 1);
+		}
+
+		if (products == null)
+			products = loadPage("select " + SUMMARY_COLUMNS
+					+ " from product where lower(ptype) like ? and pid > ? order by pid limit ?", "%" + type + "%",
+					afterPid, pageSize + 1);
+
+		return toPidPage(products, pageSize);
+	}
+
+	@Override
+	public PageBean<ProductBean> searchProductsPage(String search, String cursor, int pageSize) {
+		ensureSearchIndex();
+
+		if (ProductSearchIndex.tokenize(search).isEmpty())
+			return getProductsPage(cursor, pageSize);
+
+		List<ProductSearchIndex.Hit> hits = SEARCH_INDEX.searchHits(search);
+
+		int start = 0;
+		String[] key = CursorUtil.decode(cursor, 2);
+		if (key != null) {
+			try {
+				start = ProductSearchIndex.seekAfter(hits, Integer.parseInt(key[0]), key[1]);
+			} catch (NumberFormatException e) {
+				start = 0;
+			}
+		}
+
+		int end = Math.min(start + pageSize, hits.size());
+		List<String> prodIds = new ArrayList<String>(end - start);
+		for (int pos = start; pos < end; pos++)
+			prodIds.add(hits.get(pos).getProdId());
+
+		List<ProductBean> products = new ArrayList<ProductBean>(getProductsByIds(prodIds).values());
+
+		String nextCursor = null;
+		if (end < hits.size()) {
+			ProductSearchIndex.Hit last = hits.get(end - 1);
+			nextCursor = CursorUtil.encode(String.valueOf(last.getScore()), last.getProdId());
+		}
+
+		return new PageBean<ProductBean>(products, nextCursor);
+	}
+
+	/*
+	 * Runs a "... pid > ? order by pid limit ?" query, optionally with one
+	 * leading string parameter.
+	 */
+	private List<ProductBean> loadPage(String sql, String firstParam, String afterPid, int limit) {
 		List<ProductBean> products = new ArrayList<ProductBean>();
 
 		Connection con = DBUtil.provideConnection();
@@ -275,27 +479,19 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement(
-					"SELECT * FROM `shopping-cart`.product where lower(ptype) like ? or lower(pname) like ? or lower(pinfo) like ?");
-			search = "%" + search + "%";
-			ps.setString(1, search);
-			ps.setString(2, search);
-			ps.setString(3, search);
-			rs = ps.executeQuery();
+			ps = con.prepareStatement(sql);
 
-			while (rs.next()) {
+			int i = 1;
+			if (firstParam != null)
+				ps.setString(i++, firstParam);
+			ps.setString(i++, afterPid == null ? "" : afterPid);
+			ps.setInt(i, limit);
 
-				ProductBean product = new ProductBean();
+			rs = ps.executeQuery();
 
-				product.setProdId(rs.getString(1));
-				product.setProdName(rs.getString(2));
-				product.setProdType(rs.getString(3));
-				product.setProdInfo(rs.getString(4));
-				product.setProdPrice(rs.getDouble(5));
-				product.setProdQuantity(rs.getInt(6));
-				product.setProdImage(rs.getAsciiStream(7));
+			while (rs.next()) {
 
-				products.add(product);
+				products.add(mapSummary(rs));
 
 			}
 
@@ -303,16 +499,41 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return products;
 	}
 
+	/*
+	 * Trims a pageSize + 1 result to pageSize and derives the cursor from the
+	 * last pid kept; the extra row only tells whether another page exists.
+	 */
+	private static PageBean<ProductBean> toPidPage(List<ProductBean> products, int pageSize) {
+		String nextCursor = null;
+
+		if (products.size() > pageSize) {
+			products = new ArrayList<ProductBean>(products.subList(0, pageSize));
+			nextCursor = CursorUtil.encode(products.get(pageSize - 1).getProdId());
+		}
+
+		return new PageBean<ProductBean>(products, nextCursor);
+	}
+
+	private void ensureSearchIndex() {
+		if (SEARCH_INDEX.needsRebuild()) {
+			synchronized (SEARCH_INDEX) {
+				if (SEARCH_INDEX.needsRebuild())
+					SEARCH_INDEX.rebuild(getAllProducts());
+			}
+		}
+	}
+
 	@Override
 	public byte[] getImage(String prodId) {
 		byte[] image = null;
+		String imageHash = null;
 
 		Connection con = DBUtil.provideConnection();
 
@@ -320,29 +541,364 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select image from product where  pid=?");
+			ps = con.prepareStatement("select image, image_hash from product where  pid=?");
 
 			ps.setString(1, prodId);
 
 			rs = ps.executeQuery();
 
-			if (rs.next())
+			if (rs.next()) {
 				image = rs.getBytes("image");
+				imageHash = rs.getString("image_hash");
+			}
 
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
 		DBUtil.closeConnection(con);
+
+		if (imageHash != null)
+			image = readStoredImage(imageHash);
+
+		return image;
+	}
+
+	@Override
+	public Path getImageFile(String prodId) {
+		ImageTag info = imageInfo(prodId);
+		if (info == null || !info.stored || IMAGE_STORE == null)
+			return null;
+		return IMAGE_STORE.pathOf(info.tag);
+	}
+
+	/*
+	 * Streams an upload into the file store when image.storage=file.
+	 *
+	 * @return the content hash, or null if the image goes into the BLOB column
+	 */
+	private static String storeUpload(InputStream image) throws IOException {
+		if (image == null || IMAGE_STORE == null || !IMAGE_STORE.isWriteEnabled())
+			return null;
+		return IMAGE_STORE.store(image);
+	}
+
+	private static byte[] readStoredImage(String imageHash) {
+		if (IMAGE_STORE == null) {
+			System.err.println("Image " + imageHash + " is in the file store but image.storage.dir is not set");
+			return null;
+		}
+		try {
+			return IMAGE_STORE.read(imageHash);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	@Override
+	public byte[] getImageVariant(String prodId, ImageVariant variant) {
+		byte[] image = null;
+		boolean found = false;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select image from product_image_variant where pid=? and variant=?");
+
+			ps.setString(1, prodId);
+			ps.setString(2, variant.getStoredName());
+
+			rs = ps.executeQuery();
+
+			// a null image marks an original that cannot be rendered
+			if (rs.next()) {
+				found = true;
+				image = rs.getBytes("image");
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		if (!found) {
+			// uploaded before variants existed, or made by an older ImageVariant
+			byte[] original = getImage(prodId);
+			if (original != null)
+				image = storeImageVariants(prodId, original).get(variant);
+		}
 
 		return image;
 	}
 
+	/*
+	 * Renders every variant of the given original and stores it, replacing
+	 * the previous renditions. A variant of an image ImageIO cannot decode is
+	 * stored with a null image, so ShowImage falls back to the original
+	 * without rendering again on every request; the rows of a product without
+	 * an image are removed.
+	 */
+	private Map<ImageVariant, byte[]> storeImageVariants(String prodId, byte[] original) {
+		Map<ImageVariant, byte[]> rendered = new EnumMap<ImageVariant, byte[]>(ImageVariant.class);
+
+		for (ImageVariant variant : ImageVariant.values()) {
+			byte[] image = null;
+			if (original != null) {
+				try {
+					image = variant.render(original);
+				} catch (IOException | RuntimeException e) {
+					e.printStackTrace();
+				}
+			}
+			rendered.put(variant, image);
+		}
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+
+		try {
+			ps = con.prepareStatement("insert into product_image_variant (pid, variant, image) values(?,?,?)"
+					+ " on duplicate key update image=values(image)");
+			ps2 = con.prepareStatement("delete from product_image_variant where pid=? and variant=?");
+
+			for (Map.Entry<ImageVariant, byte[]> entry : rendered.entrySet()) {
+				if (original != null) {
+					ps.setString(1, prodId);
+					ps.setString(2, entry.getKey().getStoredName());
+					ps.setBytes(3, entry.getValue());
+					ps.executeUpdate();
+				} else {
+					ps2.setString(1, prodId);
+					ps2.setString(2, entry.getKey().getStoredName());
+					ps2.executeUpdate();
+				}
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(con);
+
+		return rendered;
+	}
+
+	@Override
+	public ImageCache.CachedImage getCachedImage(String prodId, ImageVariant variant) {
+		String tag = getImageTag(prodId);
+		if (tag == null)
+			return null;
+
+		String expectedTag = variant == null ? tag : variant.tagOf(tag);
+		String key = imageCacheKey(prodId, variant);
+
+		ImageCache.CachedImage image = IMAGE_CACHE.get(key);
+		if (image != null && image.getTag().equals(expectedTag))
+			return image;
+
+		if (variant != null) {
+			byte[] bytes = getImageVariant(prodId, variant);
+			if (bytes != null)
+				return IMAGE_CACHE.put(key, bytes, expectedTag);
+
+			// not renderable: the original is cached as the variant too
+			ImageCache.CachedImage original = getCachedImage(prodId, null);
+			return original == null ? null : IMAGE_CACHE.put(key, original, expectedTag);
+		}
+
+		ImageTag info = IMAGE_TAGS.get(prodId);
+		if (info != null && info.stored) {
+			// content addressed: the file of a hash never changes
+			byte[] bytes = readStoredImage(tag);
+			return bytes == null ? null : IMAGE_CACHE.put(key, bytes, tag);
+		}
+
+		byte[] bytes = getImage(prodId);
+		if (bytes == null)
+			return null;
+
+		// hash what was read: the image may have changed since the tag was
+		String actualTag = DigestUtils.sha1Hex(bytes);
+		if (!actualTag.equals(tag))
+			IMAGE_TAGS.put(prodId, new ImageTag(actualTag, false, System.currentTimeMillis()));
+
+		return IMAGE_CACHE.put(key, bytes, actualTag);
+	}
+
+	public static ImageCache getImageCache() {
+		return IMAGE_CACHE;
+	}
+
+	private static String imageCacheKey(String prodId, ImageVariant variant) {
+		return variant == null ? prodId : prodId + "/" + variant.getStoredName();
+	}
+
+	private static void invalidateCachedImages(String prodId) {
+		IMAGE_CACHE.invalidate(imageCacheKey(prodId, null));
+		for (ImageVariant variant : ImageVariant.values())
+			IMAGE_CACHE.invalidate(imageCacheKey(prodId, variant));
+	}
+
+	@Override
+	public String getImageTag(String prodId) {
+		ImageTag info = imageInfo(prodId);
+		return info == null ? null : info.tag;
+	}
+
+	/*
+	 * Tag of the product image: the SHA-256 kept in image_hash for images in
+	 * the file store, else the SHA-1 of the BLOB computed by MySQL, so the
+	 * image itself never leaves the server. Null if there is no such product.
+	 */
+	private ImageTag imageInfo(String prodId) {
+		if (prodId == null)
+			return null;
+
+		ImageTag cached = IMAGE_TAGS.get(prodId);
+		if (cached != null && System.currentTimeMillis() - cached.loadedAt <= IMAGE_TAG_TTL_MILLIS)
+			return cached;
+
+		ImageTag info = null;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select image_hash, sha1(image) from product where pid=?");
+
+			ps.setString(1, prodId);
+
+			rs = ps.executeQuery();
+
+			if (rs.next()) {
+				String imageHash = rs.getString(1);
+				info = imageHash != null ? new ImageTag(imageHash, true, System.currentTimeMillis())
+						: new ImageTag(rs.getString(2), false, System.currentTimeMillis());
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		if (info != null)
+			IMAGE_TAGS.put(prodId, info);
+
+		return info;
+	}
+
 	@Override
 	public ProductBean getProductDetails(String prodId) {
+		ProductBean product = CATALOG.get(prodId);
+
+		if (product == null) {
+			product = loadProduct(prodId);
+			CATALOG.put(product);
+		}
+
+		return product;
+	}
+
+	@Override
+	public Map<String, ProductBean> getProductsByIds(Collection<String> prodIds) {
+		Map<String, ProductBean> products = new LinkedHashMap<String, ProductBean>();
+		List<String> missing = new ArrayList<String>();
+
+		for (String prodId : new LinkedHashSet<String>(prodIds)) {
+			ProductBean product = CATALOG.get(prodId);
+			products.put(prodId, product);
+			if (product == null)
+				missing.add(prodId);
+		}
+
+		int max = MAX_IN_LIST_SIZE;
+		for (int from = 0; from < missing.size(); from += max) {
+			List<String> chunk = missing.subList(from, Math.min(from + max, missing.size()));
+			for (ProductBean product : loadProducts(chunk)) {
+				products.put(product.getProdId(), product);
+				CATALOG.put(product);
+			}
+		}
+
+		// ids that do not exist in the database
+		products.values().removeIf(product -> product == null);
+
+		return products;
+	}
+
+	private List<ProductBean> loadProducts(List<String> prodIds) {
+		List<ProductBean> products = new ArrayList<ProductBean>();
+
+		int size = inListSize(prodIds.size());
+
+		StringBuilder sql = new StringBuilder("select " + SUMMARY_COLUMNS + " from product where pid in (");
+		for (int i = 0; i < size; i++)
+			sql.append(i == 0 ? "?" : ",?");
+		sql.append(")");
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement(sql.toString());
+
+			// padding repeats the last id, which does not change the result
+			for (int i = 0; i < size; i++)
+				ps.setString(i + 1, prodIds.get(Math.min(i, prodIds.size() - 1)));
+
+			rs = ps.executeQuery();
+
+			while (rs.next()) {
+
+				products.add(mapSummary(rs));
+
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		return products;
+	}
+
+	/*
+	 * Rounds a list length up to one of a few fixed sizes, so variable length
+	 * IN lists reuse a handful of cached statements.
+	 */
+	static int inListSize(int n) {
+		for (int size : IN_LIST_SIZES) {
+			if (size >= n)
+				return size;
+		}
+		return n;
+	}
+
+	private ProductBean loadProduct(String prodId) {
 		ProductBean product = null;
 
 		Connection con = DBUtil.provideConnection();
@@ -351,20 +907,13 @@ public class ProductServiceImpl implements ProductService {
 		ResultSet rs = null;
 
 		try {
-			ps = con.prepareStatement("select * from product where pid=?");
+			ps = con.prepareStatement("select " + SUMMARY_COLUMNS + " from product where pid=?");
 
 			ps.setString(1, prodId);
 			rs = ps.executeQuery();
 
 			if (rs.next()) {
-				product = new ProductBean();
-				product.setProdId(rs.getString(1));
-				product.setProdName(rs.getString(2));
-				product.setProdType(rs.getString(3));
-				product.setProdInfo(rs.getString(4));
-				product.setProdPrice(rs.getDouble(5));
-				product.setProdQuantity(rs.getInt(6));
-				product.setProdImage(rs.getAsciiStream(7));
+				product = mapSummary(rs);
 			}
 
 		} catch (SQLException e) {
@@ -372,8 +921,9 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return product;
 	}
@@ -389,6 +939,8 @@ public class ProductServiceImpl implements ProductService {
 			return status;
 		}
 
+		INVENTORY.returnLease(prevProductId);
+
 		int prevQuantity = new ProductServiceImpl().getProductQuantity(prevProductId);
 		Connection con = DBUtil.provideConnection();
 
@@ -435,103 +987,92 @@ public class ProductServiceImpl implements ProductService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
 		// System.out.println("Prod Update status : "+status);
 
+		refreshCachedProduct(prevProductId);
+
 		return status;
 	}
 
 	@Override
 	public double getProductPrice(String prodId) {
-		double price = 0;
-
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-		ResultSet rs = null;
-
-		try {
-			ps = con.prepareStatement("select * from product where pid=?");
-
-			ps.setString(1, prodId);
-			rs = ps.executeQuery();
-
-			if (rs.next()) {
-				price = rs.getDouble("pprice");
-			}
-
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
+		ProductBean product = getProductDetails(prodId);
 
-		return price;
+		return product == null ? 0 : product.getProdPrice();
 	}
 
 	@Override
 	public boolean sellNProduct(String prodId, int n) {
-		boolean flag = false;
-
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
+		return sellProduct(prodId, n) == InventoryEngine.Outcome.SOLD;
+	}
 
-		try {
+	@Override
+	public InventoryEngine.Outcome sellProduct(String prodId, int n) {
+		InventoryEngine.Outcome outcome = INVENTORY.sell(prodId, n);
 
-			ps = con.prepareStatement("update product set pquantity=(pquantity - ?) where pid=?");
+		if (outcome == InventoryEngine.Outcome.SOLD)
+			adjustCachedQuantity(prodId, -n);
 
-			ps.setInt(1, n);
+		return outcome;
+	}
 
-			ps.setString(2, prodId);
+	@Override
+	public boolean restockProduct(String prodId, int n) {
+		boolean flag = INVENTORY.restock(prodId, n);
 
-			int k = ps.executeUpdate();
+		if (flag)
+			adjustCachedQuantity(prodId, n);
 
-			if (k > 0)
-				flag = true;
-		} catch (SQLException e) {
-			flag = false;
-			e.printStackTrace();
-		}
+		return flag;
+	}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
+	/*
+	 * Adjusted in memory: re-reading the row per sale would undo the point of
+	 * selling hot products from leased stock.
+	 */
+	static void adjustCachedQuantity(String prodId, int delta) {
+		CATALOG.adjustQuantity(prodId, delta);
+	}
 
-		return flag;
+	public static InventoryEngine getInventory() {
+		return INVENTORY;
 	}
 
 	@Override
 	public int getProductQuantity(String prodId) {
+		ProductBean product = getProductDetails(prodId);
 
-		int quantity = 0;
-
-		Connection con = DBUtil.provideConnection();
-
-		PreparedStatement ps = null;
-		ResultSet rs = null;
-
-		try {
-			ps = con.prepareStatement("select * from product where pid=?");
-
-			ps.setString(1, prodId);
-			rs = ps.executeQuery();
-
-			if (rs.next()) {
-				quantity = rs.getInt("pquantity");
-			}
+		return product == null ? 0 : product.getProdQuantity();
+	}
 
-		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	/*
+	 * Write-through for the catalog cache and search index: re-reads the row
+	 * that was just written so both keep serving what is actually in the table.
+	 */
+	private void refreshCachedProduct(String prodId) {
+		ProductBean product = loadProduct(prodId);
+
+		if (product == null) {
+			CATALOG.remove(prodId);
+			SEARCH_INDEX.remove(prodId);
+		} else {
+			CATALOG.put(product);
+			SEARCH_INDEX.put(product);
 		}
+	}
 
-		DBUtil.closeConnection(con);
-		DBUtil.closeConnection(ps);
+	private static final class ImageTag {
+		final String tag;
+		final boolean stored;
+		final long loadedAt;
 
-		return quantity;
+		ImageTag(String tag, boolean stored, long loadedAt) {
+			this.tag = tag;
+			this.stored = stored;
+			this.loadedAt = loadedAt;
+		}
 	}
-
 }
@@ -0,0 +1,209 @@
+package com.shashi.service.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.shashi.service.impl.OrderServiceImpl.CheckoutLine;
+import com.shashi.utility.DBUtil;
+import com.shashi.utility.StringIntMap;
+
+/**
+ * Units sold per product, for the admin stock page. Loaded with one group-by
+ * over orders and reloaded every sold.counts.ttlSeconds, so orders placed on
+ * another server or changed in the database show up; in between every
+ * committed checkout adds its lines.
+ *
+ * Checkouts hold the read lock from just before their commit until their
+ * lines are added. A reload takes the write lock only to open a consistent
+ * snapshot, so its group-by sees exactly the orders committed before that
+ * point; checkouts committed while it runs are collected and added to the
+ * loaded counts before they replace the old ones.
+ */
+class SoldCounts {
+
+	private final long ttlMillis;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// one reload at a time
+	private final ReentrantLock reloading = new ReentrantLock();
+
+	// null until loaded
+	private volatile Map<String, AtomicInteger> counts;
+	private volatile long loadedAt;
+
+	// lines committed while a reload runs, null otherwise
+	private Map<String, AtomicInteger> pending;
+
+	SoldCounts() {
+		this(DBUtil.getInt(ResourceBundle.getBundle("application"), "sold.counts.ttlSeconds", 60) * 1000L);
+	}
+
+	SoldCounts(long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+	}
+
+	void beginCommit() {
+		lock.readLock().lock();
+	}
+
+	/*
+	 * Called between beginCommit and endCommit, once the commit succeeded.
+	 */
+	void add(List<CheckoutLine> lines) {
+		add(counts, lines);
+		synchronized (this) {
+			add(pending, lines);
+		}
+	}
+
+	private static void add(Map<String, AtomicInteger> map, List<CheckoutLine> lines) {
+		if (map == null)
+			return;
+		for (CheckoutLine line : lines)
+			map.computeIfAbsent(line.prodId, prodId -> new AtomicInteger()).addAndGet(line.quantity);
+	}
+
+	void endCommit() {
+		lock.readLock().unlock();
+	}
+
+	int get(String prodId) {
+		AtomicInteger count = current().get(prodId);
+		return count == null ? 0 : count.get();
+	}
+
+	StringIntMap get(Collection<String> prodIds) {
+		Map<String, AtomicInteger> current = current();
+
+		StringIntMap sold = new StringIntMap(prodIds.size());
+		for (String prodId : prodIds) {
+			AtomicInteger count = current.get(prodId);
+			sold.put(prodId, count == null ? 0 : count.get());
+		}
+		return sold;
+	}
+
+	/*
+	 * Stale counts are served while another reader reloads them; only the
+	 * first load makes readers wait.
+	 */
+	private Map<String, AtomicInteger> current() {
+		Map<String, AtomicInteger> current = counts;
+		if (current != null && System.currentTimeMillis() - loadedAt <= ttlMillis)
+			return current;
+
+		if (current == null)
+			reloading.lock();
+		else if (!reloading.tryLock())
+			return current;
+
+		try {
+			if (counts == current)
+				reload();
+			current = counts;
+		} finally {
+			reloading.unlock();
+		}
+
+		// retried on the next read if the database was not reachable
+		return current == null ? new ConcurrentHashMap<String, AtomicInteger>() : current;
+	}
+
+	private void reload() {
+		Connection con = DBUtil.provideConnection();
+
+		// the snapshot would commit a transaction this thread has open
+		if (con == null || !autoCommit(con)) {
+			DBUtil.closeConnection(con);
+			return;
+		}
+
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+		ResultSet rs = null;
+
+		Map<String, AtomicInteger> loaded = new ConcurrentHashMap<String, AtomicInteger>();
+
+		try {
+			con.setAutoCommit(false);
+
+			// not server preparable; the driver runs it client side
+			ps = con.prepareStatement("start transaction with consistent snapshot");
+
+			lock.writeLock().lock();
+			try {
+				ps.execute();
+				synchronized (this) {
+					pending = new HashMap<String, AtomicInteger>();
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+
+			ps2 = con.prepareStatement("select prodid, sum(quantity) from orders group by prodid");
+
+			rs = ps2.executeQuery();
+
+			while (rs.next())
+				loaded.put(rs.getString(1), new AtomicInteger(rs.getInt(2)));
+
+			con.commit();
+
+			lock.writeLock().lock();
+			try {
+				synchronized (this) {
+					for (Map.Entry<String, AtomicInteger> entry : pending.entrySet())
+						loaded.computeIfAbsent(entry.getKey(), prodId -> new AtomicInteger())
+								.addAndGet(entry.getValue().get());
+					pending = null;
+				}
+				counts = loaded;
+				loadedAt = System.currentTimeMillis();
+			} finally {
+				lock.writeLock().unlock();
+			}
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+			try {
+				con.rollback();
+			} catch (SQLException e1) {
+				e1.printStackTrace();
+			}
+		} finally {
+			synchronized (this) {
+				pending = null;
+			}
+			try {
+				con.setAutoCommit(true);
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(ps2);
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(con);
+		}
+	}
+
+	private static boolean autoCommit(Connection con) {
+		try {
+			return con.getAutoCommit();
+		} catch (SQLException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+}
@@ -33,6 +33,10 @@ public class TransServiceImpl implements TransService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
 		return userId;
 	}
 
@@ -65,7 +65,7 @@ public class UserServiceImpl implements UserService {
 		}
 
 		DBUtil.closeConnection(ps);
-		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(conn);
 
 		return status;
 	}
@@ -94,9 +94,9 @@ public class UserServiceImpl implements UserService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return flag;
 	}
@@ -127,9 +127,9 @@ public class UserServiceImpl implements UserService {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 		return status;
 	}
 
@@ -157,17 +157,15 @@ public class UserServiceImpl implements UserService {
 				user.setAddress(rs.getString("address"));
 				user.setPinCode(rs.getInt("pincode"));
 				user.setPassword(rs.getString("password"));
-
-				return user;
 			}
 
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
 
-		DBUtil.closeConnection(con);
 		DBUtil.closeConnection(ps);
 		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
 
 		return user;
 	}
@@ -199,6 +197,10 @@ public class UserServiceImpl implements UserService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
 		return fname;
 	}
 
@@ -225,6 +227,10 @@ public class UserServiceImpl implements UserService {
 			e.printStackTrace();
 		}
 
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
 		return userAddr;
 	}
 
@@ -11,11 +11,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
-import com.shashi.beans.DemandBean;
-import com.shashi.beans.ProductBean;
 import com.shashi.service.impl.CartServiceImpl;
-import com.shashi.service.impl.DemandServiceImpl;
-import com.shashi.service.impl.ProductServiceImpl;
 
 /**
  * Servlet implementation class AddtoCart
@@ -48,20 +44,10 @@ public class AddtoCart extends HttpServlet {
 
 		CartServiceImpl cart = new CartServiceImpl();
 
-		ProductServiceImpl productDao = new ProductServiceImpl();
-
-		ProductBean product = productDao.getProductDetails(prodId);
-
-		int availableQty = product.getProdQuantity();
-
-		int cartQty = cart.getProductCount(userId, prodId);
-
-		pQty += cartQty;
-
 		PrintWriter pw = response.getWriter();
 
 		response.setContentType("text/html");
-		if (pQty == cartQty) {
+		if (pQty == 0) {
 			String status = cart.removeProductFromCart(userId, prodId);
 
 			RequestDispatcher rd = request.getRequestDispatcher("userHome.jsp");
@@ -69,40 +55,16 @@ public class AddtoCart extends HttpServlet {
 			rd.include(request, response);
 
 			pw.println("<script>document.getElementById('message').innerHTML='" + status + "'</script>");
-		} else if (availableQty < pQty) {
-
-			String status = null;
-
-			if (availableQty == 0) {
-				status = "Product is Out of Stock!";
-			} else {
-
-				cart.updateProductToCart(userId, prodId, availableQty);
-
-				status = "Only " + availableQty + " no of " + product.getProdName()
-						+ " are available in the shop! So we are adding only " + availableQty
-						+ " products into Your Cart" + "";
-			}
-			DemandBean demandBean = new DemandBean(userName, product.getProdId(), pQty - availableQty);
-
-			DemandServiceImpl demand = new DemandServiceImpl();
-
-			boolean flag = demand.addProduct(demandBean);
-
-			if (flag)
-				status += "<br/>Later, We Will Mail You when " + product.getProdName()
-						+ " will be available into the Store!";
-
-			RequestDispatcher rd = request.getRequestDispatcher("cartDetails.jsp");
-
-			rd.include(request, response);
-
-			pw.println("<script>document.getElementById('message').innerHTML='" + status + "'</script>");
-
 		} else {
-			String status = cart.updateProductToCart(userId, prodId, pQty);
+			// adds in one statement; checks the stock and records the demand
+			// if it falls short
+			String status = cart.addProductToCart(userId, prodId, pQty);
 
-			RequestDispatcher rd = request.getRequestDispatcher("userHome.jsp");
+			String pagename = "userHome.jsp";
+			if (!status.startsWith("Product Successfully"))
+				pagename = "cartDetails.jsp";
+
+			RequestDispatcher rd = request.getRequestDispatcher(pagename);
 
 			rd.include(request, response);
 
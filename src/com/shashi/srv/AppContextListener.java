@@ -0,0 +1,35 @@
+package com.shashi.srv;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import com.shashi.service.impl.OrderServiceImpl;
+import com.shashi.service.impl.ProductServiceImpl;
+import com.shashi.utility.DBUtil;
+import com.shashi.utility.MailOutbox;
+
+/**
+ * Starts the mail outbox and releases the shared application resources when
+ * the web app is undeployed.
+ */
+@WebListener
+public class AppContextListener implements ServletContextListener {
+
+	@Override
+	public void contextInitialized(ServletContextEvent sce) {
+		// mails saved but not sent before the last stop
+		MailOutbox.start();
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent sce) {
+		if (OrderServiceImpl.getGroupCommitter() != null)
+			OrderServiceImpl.getGroupCommitter().shutdown();
+		// leased stock goes back to the product table while the pool is up
+		ProductServiceImpl.getInventory().shutdown();
+		MailOutbox.shutdown();
+		DBUtil.shutdownPool();
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.shashi.srv;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import com.shashi.beans.ShipmentBean;
+import com.shashi.service.impl.OrderServiceImpl;
+import com.shashi.utility.MailMessage;
+
+/**
+ * Ships every order line selected on the unshipped orders page at once. Each
+ * "line" parameter is "orderid,prodid"; customers are mailed in the
+ * background.
+ */
+@WebServlet("/BulkShipmentServlet")
+public class BulkShipmentServlet extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+
+	public BulkShipmentServlet() {
+		super();
+	}
+
+	protected void doPost(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		HttpSession session = request.getSession();
+		String userType = (String) session.getAttribute("usertype");
+		if (userType == null || !userType.equals("admin")) {
+
+			response.sendRedirect("login.jsp?message=Access Denied, Login as admin!!");
+			return;
+		}
+
+		List<ShipmentBean> lines = new ArrayList<ShipmentBean>();
+		String[] values = request.getParameterValues("line");
+		if (values != null) {
+			for (String value : values) {
+				int comma = value.indexOf(',');
+				if (comma <= 0 || comma == value.length() - 1)
+					continue;
+				ShipmentBean line = new ShipmentBean();
+				line.setTransactionId(value.substring(0, comma));
+				line.setProductId(value.substring(comma + 1));
+				lines.add(line);
+			}
+		}
+
+		List<ShipmentBean> results = new OrderServiceImpl().shipOrders(lines);
+
+		int shipped = 0;
+		List<ShipmentBean> shippedLines = new ArrayList<ShipmentBean>();
+		StringBuilder failed = new StringBuilder();
+		for (int i = 0; i < lines.size(); i++) {
+			ShipmentBean result = results.get(i);
+			if (result == null) {
+				failed.append("<br/>").append(lines.get(i).getTransactionId()).append(" / ")
+						.append(lines.get(i).getProductId());
+				continue;
+			}
+			shipped++;
+			shippedLines.add(result);
+		}
+
+		// the customer names came with the shipped lines, so this is one insert
+		MailMessage.orderShipped(shippedLines);
+
+		String status = shipped + " order item(s) shipped successfully!!";
+		if (failed.length() > 0)
+			status += "<br/>Not shipped (already shipped or no such order):" + failed;
+
+		PrintWriter pw = response.getWriter();
+		response.setContentType("text/html");
+
+		RequestDispatcher rd = request.getRequestDispatcher("unshippedItems.jsp");
+
+		rd.include(request, response);
+
+		pw.println("<script>document.getElementById('message').innerHTML='" + status + "'</script>");
+	}
+
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+
+		response.sendRedirect("unshippedItems.jsp");
+	}
+
+}
@@ -1,11 +1,17 @@
 package com.shashi.srv;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
-import javax.imageio.ImageIO;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.annotation.WebServlet;
@@ -13,12 +19,35 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.shashi.service.impl.ProductServiceImpl;
+import org.apache.commons.codec.digest.DigestUtils;
 
+import com.shashi.service.impl.ProductServiceImpl;
+import com.shashi.utility.ImageCache;
+import com.shashi.utility.ImageVariant;
+
+/**
+ * Serves product images with a content hash ETag. Browsers keep the image and
+ * revalidate it on every use; an unchanged image is answered with 304 Not
+ * Modified without reading the BLOB.
+ *
+ * size=thumb or size=medium selects a downscaled rendition (see
+ * ImageVariant) instead of the uploaded original. Image bytes come from the
+ * off-heap ImageCache, so popular images do not touch MySQL at all. Originals
+ * kept in the file store (see ImageStore) are sent straight from disk.
+ */
 @WebServlet("/ShowImage")
 public class ShowImage extends HttpServlet {
 	private static final long serialVersionUID = 1L;
 
+	private static final String CACHE_CONTROL = "public, no-cache";
+
+	private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+	private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+	private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+	private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+	private volatile ImageCache.CachedImage noImage;
+
 	public ShowImage() {
 		super();
 	}
@@ -27,24 +56,49 @@ public class ShowImage extends HttpServlet {
 			throws ServletException, IOException {
 
 		String prodId = request.getParameter("pid");
+		ImageVariant variant = ImageVariant.fromKey(request.getParameter("size"));
 
 		ProductServiceImpl dao = new ProductServiceImpl();
 
-		byte[] image = dao.getImage(prodId);
+		ImageCache.CachedImage image = null;
+
+		String tag = dao.getImageTag(prodId);
+
+		if (tag != null) {
+			String expectedTag = variant == null ? tag : variant.tagOf(tag);
+			if (matches(request.getHeader("If-None-Match"), expectedTag)) {
+				notModified(response, expectedTag);
+				return;
+			}
+
+			if (variant == null) {
+				Path file = dao.getImageFile(prodId);
+				if (file != null && serveFile(request, response, file, tag))
+					return;
+			}
+
+			image = dao.getCachedImage(prodId, variant);
+		}
 
 		if (image == null) {
-			File fnew = new File(request.getServletContext().getRealPath("images/noimage.jpg"));
-			BufferedImage originalImage = ImageIO.read(fnew);
-			ByteArrayOutputStream baos = new ByteArrayOutputStream();
-			ImageIO.write(originalImage, "jpg", baos);
-			image = baos.toByteArray();
+			image = getNoImage(request);
+
+			if (matches(request.getHeader("If-None-Match"), image.getTag())) {
+				notModified(response, image.getTag());
+				return;
+			}
 		}
 
+		response.setContentType(image.getContentType());
+		response.setContentLength(image.getLength());
+		response.setHeader("ETag", "\"" + image.getTag() + "\"");
+		response.setHeader("Cache-Control", CACHE_CONTROL);
+
 		ServletOutputStream sos = null;
 
 		sos = response.getOutputStream();
 
-		sos.write(image);
+		image.writeTo(sos);
 
 	}
 
@@ -54,4 +108,84 @@ public class ShowImage extends HttpServlet {
 		doGet(request, response);
 	}
 
+	/*
+	 * Sends a file from the image store. Where Tomcat offers sendfile the
+	 * connector hands the file to the kernel after the servlet returns;
+	 * elsewhere FileChannel.transferTo streams it to the response. Returns
+	 * false if the file is missing.
+	 */
+	private static boolean serveFile(HttpServletRequest request, HttpServletResponse response, Path file,
+			String tag) throws IOException {
+		FileChannel channel;
+		try {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+		} catch (NoSuchFileException e) {
+			System.err.println("Missing image file " + file);
+			return false;
+		}
+
+		try {
+			long size = channel.size();
+
+			ByteBuffer head = ByteBuffer.allocate(12);
+			channel.read(head, 0);
+
+			response.setContentType(ImageCache.contentTypeOf(Arrays.copyOf(head.array(), head.position())));
+			response.setContentLengthLong(size);
+			response.setHeader("ETag", "\"" + tag + "\"");
+			response.setHeader("Cache-Control", CACHE_CONTROL);
+
+			if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+				request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+				request.setAttribute(SENDFILE_START, Long.valueOf(0));
+				request.setAttribute(SENDFILE_END, Long.valueOf(size));
+				return true;
+			}
+
+			WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+			long position = 0;
+			while (position < size)
+				position += channel.transferTo(position, size - position, out);
+		} finally {
+			channel.close();
+		}
+		return true;
+	}
+
+	private ImageCache.CachedImage getNoImage(HttpServletRequest request) throws IOException {
+		ImageCache.CachedImage image = noImage;
+		if (image == null) {
+			byte[] bytes = Files.readAllBytes(Paths.get(request.getServletContext().getRealPath("images/noimage.jpg")));
+			image = ImageCache.wrap(bytes, DigestUtils.sha1Hex(bytes));
+			noImage = image;
+		}
+		return image;
+	}
+
+	private static void notModified(HttpServletResponse response, String tag) {
+		response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		response.setHeader("ETag", "\"" + tag + "\"");
+		response.setHeader("Cache-Control", CACHE_CONTROL);
+	}
+
+	/*
+	 * If-None-Match holds "*" or a comma separated list of (possibly weak)
+	 * entity tags.
+	 */
+	private static boolean matches(String ifNoneMatch, String tag) {
+		if (ifNoneMatch == null)
+			return false;
+
+		for (String candidate : ifNoneMatch.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*"))
+				return true;
+			if (candidate.startsWith("W/"))
+				candidate = candidate.substring(2);
+			if (candidate.equals("\"" + tag + "\""))
+				return true;
+		}
+		return false;
+	}
+
 }
@@ -0,0 +1,363 @@
+package com.shashi.utility;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of physical JDBC connections.
+ *
+ * Checkout is fair (FIFO among waiting threads) and bounded by a timeout. A
+ * thread that already holds a connection gets the same one back, so the
+ * service classes that call each other while holding a connection never need
+ * two slots. Calling close() on a handed out connection returns it to the pool
+ * once the outermost holder has released it.
+ */
+public class ConnectionPool {
+
+	private final String connectionString;
+	private final Properties connectionProps;
+
+	private final int maxSize;
+	private final int minIdle;
+	private final long checkoutTimeoutMillis;
+	private final long idleTimeoutMillis;
+	private final long validationIntervalMillis;
+	private final int validationTimeoutSeconds;
+	private final int statementCacheSize;
+
+	private final Semaphore permits;
+	private final ConcurrentLinkedDeque<PooledConnection> idle = new ConcurrentLinkedDeque<PooledConnection>();
+	private final Set<PooledConnection> open = ConcurrentHashMap.newKeySet();
+	private final ThreadLocal<PooledConnection> held = new ThreadLocal<PooledConnection>();
+	private final ScheduledExecutorService evictor;
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger total = new AtomicInteger();
+	private final AtomicLong borrowCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong evictedCount = new AtomicLong();
+	private final AtomicLong invalidCount = new AtomicLong();
+	private final AtomicLong retiredStatementHits = new AtomicLong();
+	private final AtomicLong retiredStatementMisses = new AtomicLong();
+
+	private volatile boolean shutdown;
+
+	public ConnectionPool(String connectionString, Properties connectionProps, int maxSize, int minIdle,
+			long checkoutTimeoutMillis, long idleTimeoutMillis, long validationIntervalMillis,
+			int validationTimeoutSeconds, int statementCacheSize) {
+		this.connectionString = connectionString;
+		this.connectionProps = connectionProps;
+		this.maxSize = maxSize;
+		this.minIdle = Math.min(minIdle, maxSize);
+		this.checkoutTimeoutMillis = checkoutTimeoutMillis;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.validationIntervalMillis = validationIntervalMillis;
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+		this.statementCacheSize = statementCacheSize;
+		this.permits = new Semaphore(maxSize, true);
+
+		this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "db-pool-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1000, idleTimeoutMillis / 2);
+		evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	public Connection getConnection() throws SQLException {
+		if (shutdown)
+			throw new SQLException("Connection pool has been shut down");
+
+		PooledConnection current = held.get();
+		if (current != null) {
+			current.holdCount++;
+			return current.proxy;
+		}
+
+		long start = System.nanoTime();
+		boolean acquired;
+		try {
+			acquired = permits.tryAcquire(checkoutTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+		long waited = System.nanoTime() - start;
+		recordWait(waited);
+
+		if (!acquired) {
+			timeoutCount.incrementAndGet();
+			throw new SQLException("Timed out after " + checkoutTimeoutMillis
+					+ " ms waiting for a database connection (pool size " + maxSize + ")");
+		}
+
+		PooledConnection pooled;
+		try {
+			pooled = takeValidIdle();
+			if (pooled == null)
+				pooled = open();
+		} catch (SQLException e) {
+			permits.release();
+			throw e;
+		}
+
+		pooled.holdCount = 1;
+		pooled.owner = Thread.currentThread();
+		held.set(pooled);
+		active.incrementAndGet();
+		borrowCount.incrementAndGet();
+
+		return pooled.proxy;
+	}
+
+	private PooledConnection takeValidIdle() {
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null) {
+			if (isUsable(pooled))
+				return pooled;
+			invalidCount.incrementAndGet();
+			destroy(pooled);
+		}
+		return null;
+	}
+
+	private boolean isUsable(PooledConnection pooled) {
+		try {
+			if (pooled.physical.isClosed())
+				return false;
+			if (System.currentTimeMillis() - pooled.lastUsed < validationIntervalMillis)
+				return true;
+			return pooled.physical.isValid(validationTimeoutSeconds);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private PooledConnection open() throws SQLException {
+		Connection physical = DriverManager.getConnection(connectionString, connectionProps);
+		total.incrementAndGet();
+		PooledConnection pooled = new PooledConnection(physical);
+		open.add(pooled);
+		return pooled;
+	}
+
+	private void release(PooledConnection pooled) {
+		if (--pooled.holdCount > 0)
+			return;
+
+		if (pooled.statements != null)
+			pooled.statements.reclaim();
+
+		held.remove();
+		pooled.owner = null;
+		active.decrementAndGet();
+
+		boolean reusable = !shutdown && !pooled.broken;
+		if (reusable) {
+			try {
+				if (!pooled.physical.getAutoCommit()) {
+					pooled.physical.rollback();
+					pooled.physical.setAutoCommit(true);
+				}
+			} catch (SQLException e) {
+				reusable = false;
+			}
+		}
+
+		if (reusable) {
+			pooled.lastUsed = System.currentTimeMillis();
+			idle.offerFirst(pooled);
+		} else {
+			destroy(pooled);
+		}
+		permits.release();
+	}
+
+	private void evictIdle() {
+		long now = System.currentTimeMillis();
+		Iterator<PooledConnection> it = idle.descendingIterator();
+		while (it.hasNext() && idle.size() > minIdle) {
+			PooledConnection pooled = it.next();
+			if (now - pooled.lastUsed >= idleTimeoutMillis && idle.remove(pooled)) {
+				evictedCount.incrementAndGet();
+				destroy(pooled);
+			}
+		}
+	}
+
+	private void destroy(PooledConnection pooled) {
+		total.decrementAndGet();
+		open.remove(pooled);
+		if (pooled.statements != null) {
+			retiredStatementHits.addAndGet(pooled.statements.getHits());
+			retiredStatementMisses.addAndGet(pooled.statements.getMisses());
+			pooled.statements.closeAll();
+		}
+		try {
+			pooled.physical.close();
+		} catch (SQLException e) {
+			// connection is being discarded anyway
+		}
+	}
+
+	private void recordWait(long waited) {
+		totalWaitNanos.addAndGet(waited);
+		long max;
+		while (waited > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, waited))
+			;
+	}
+
+	public void shutdown() {
+		shutdown = true;
+		evictor.shutdownNow();
+		PooledConnection pooled;
+		while ((pooled = idle.pollFirst()) != null)
+			destroy(pooled);
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	public int getTotalCount() {
+		return total.get();
+	}
+
+	public int getWaitingCount() {
+		return permits.getQueueLength();
+	}
+
+	public long getBorrowCount() {
+		return borrowCount.get();
+	}
+
+	public double getAverageWaitMillis() {
+		long borrows = borrowCount.get() + timeoutCount.get();
+		return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+	}
+
+	public double getMaxWaitMillis() {
+		return maxWaitNanos.get() / 1_000_000.0;
+	}
+
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	public long getEvictedCount() {
+		return evictedCount.get();
+	}
+
+	public long getInvalidCount() {
+		return invalidCount.get();
+	}
+
+	public long getStatementCacheHits() {
+		long hits = retiredStatementHits.get();
+		for (PooledConnection pooled : open) {
+			if (pooled.statements != null)
+				hits += pooled.statements.getHits();
+		}
+		return hits;
+	}
+
+	public long getStatementCacheMisses() {
+		long misses = retiredStatementMisses.get();
+		for (PooledConnection pooled : open) {
+			if (pooled.statements != null)
+				misses += pooled.statements.getMisses();
+		}
+		return misses;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPool[active=" + getActiveCount() + ", idle=" + getIdleCount() + ", total="
+				+ getTotalCount() + ", max=" + maxSize + ", waiting=" + getWaitingCount() + ", borrows="
+				+ getBorrowCount() + ", avgWaitMs=" + String.format("%.3f", getAverageWaitMillis())
+				+ ", maxWaitMs=" + String.format("%.3f", getMaxWaitMillis()) + ", timeouts=" + getTimeoutCount()
+				+ ", stmtHits=" + getStatementCacheHits() + ", stmtMisses=" + getStatementCacheMisses() + "]";
+	}
+
+	private class PooledConnection implements InvocationHandler {
+		final Connection physical;
+		final Connection proxy;
+		final StatementCache statements;
+		volatile long lastUsed = System.currentTimeMillis();
+		int holdCount;
+		Thread owner;
+		boolean broken;
+
+		PooledConnection(Connection physical) {
+			this.physical = physical;
+			this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, this);
+			this.statements = statementCacheSize > 0 ? new StatementCache(physical, proxy, statementCacheSize)
+					: null;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if ("close".equals(name)) {
+				if (owner == Thread.currentThread())
+					release(this);
+				return null;
+			}
+			if ("isClosed".equals(name))
+				return owner != Thread.currentThread() || physical.isClosed();
+			if ("equals".equals(name))
+				return proxy == args[0];
+			if ("hashCode".equals(name))
+				return System.identityHashCode(proxy);
+			if ("toString".equals(name))
+				return "Pooled" + physical;
+
+			if (owner != Thread.currentThread())
+				throw new SQLException("Connection has already been returned to the pool");
+
+			try {
+				if (statements != null && "prepareStatement".equals(name) && args.length == 1)
+					return statements.prepare((String) args[0]);
+				return method.invoke(physical, args);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof SQLException) {
+					String state = ((SQLException) cause).getSQLState();
+					// 08xxx: connection exceptions, the physical link is gone
+					if (state != null && state.startsWith("08"))
+						broken = true;
+				}
+				throw cause;
+			}
+		}
+	}
+}
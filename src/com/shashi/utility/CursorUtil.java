@@ -0,0 +1,34 @@
+package com.shashi.utility;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes the sort key of the last row of a page into an opaque, URL safe
+ * cursor token for keyset pagination.
+ */
+public class CursorUtil {
+
+	private static final String SEPARATOR = "\n";
+
+	public static String encode(String... keys) {
+		String joined = String.join(SEPARATOR, keys);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(joined.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return the keys the cursor was built from, or null if the cursor is
+	 *         missing, malformed or has the wrong number of keys
+	 */
+	public static String[] decode(String cursor, int keyCount) {
+		if (cursor == null || cursor.isEmpty())
+			return null;
+		try {
+			String joined = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			String[] keys = joined.split(SEPARATOR, -1);
+			return keys.length == keyCount ? keys : null;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
@@ -1,35 +1,24 @@
 package com.shashi.utility;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Properties;
 import java.util.ResourceBundle;
 
 public class DBUtil {
-	private static Connection conn;
+	private static volatile ConnectionPool pool;
 
 	public DBUtil() {
 	}
 
 	public static Connection provideConnection() {
 
-		try {
-			if (conn == null || conn.isClosed()) {
-				ResourceBundle rb = ResourceBundle.getBundle("application");
-				String connectionString = rb.getString("db.connectionString");
-				String driverName = rb.getString("db.driverName");
-				String username = rb.getString("db.username");
-				String password = rb.getString("db.password");
-				try {
-					Class.forName(driverName);
-				} catch (ClassNotFoundException e) {
-					e.printStackTrace();
-				}
-				conn = DriverManager.getConnection(connectionString, username, password);
+		Connection conn = null;
 
-			}
+		try {
+			conn = getPool().getConnection();
 		} catch (SQLException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -38,13 +27,84 @@ public class DBUtil {
 		return conn;
 	}
 
+	public static ConnectionPool getPool() {
+		ConnectionPool p = pool;
+		if (p == null) {
+			synchronized (DBUtil.class) {
+				p = pool;
+				if (p == null) {
+					p = createPool();
+					pool = p;
+				}
+			}
+		}
+		return p;
+	}
+
+	private static ConnectionPool createPool() {
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+		String connectionString = rb.getString("db.connectionString");
+		String driverName = rb.getString("db.driverName");
+		String username = rb.getString("db.username");
+		String password = rb.getString("db.password");
+		try {
+			Class.forName(driverName);
+		} catch (ClassNotFoundException e) {
+			e.printStackTrace();
+		}
+
+		Properties props = new Properties();
+		props.put("user", username);
+		props.put("password", password);
+		// let MySQL keep the parsed statements so the per-connection cache pays off
+		props.put("useServerPrepStmts", getString(rb, "db.pool.serverPrepStmts", "true"));
+		// sends a JDBC batch as one multi-row statement instead of one round trip per row
+		props.put("rewriteBatchedStatements", getString(rb, "db.pool.rewriteBatchedStatements", "true"));
+
+		int maxSize = getInt(rb, "db.pool.maxSize", 20);
+		int minIdle = getInt(rb, "db.pool.minIdle", 2);
+		long checkoutTimeout = getInt(rb, "db.pool.checkoutTimeoutMillis", 5000);
+		long idleTimeout = getInt(rb, "db.pool.idleTimeoutMillis", 300000);
+		long validationInterval = getInt(rb, "db.pool.validationIntervalMillis", 30000);
+		int validationTimeout = getInt(rb, "db.pool.validationTimeoutSeconds", 2);
+		int statementCacheSize = getInt(rb, "db.pool.statementCacheSize", 64);
+
+		return new ConnectionPool(connectionString, props, maxSize, minIdle, checkoutTimeout, idleTimeout,
+				validationInterval, validationTimeout, statementCacheSize);
+	}
+
+	public static int getInt(ResourceBundle rb, String key, int defaultValue) {
+		if (!rb.containsKey(key))
+			return defaultValue;
+		try {
+			return Integer.parseInt(rb.getString(key).trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	public static String getString(ResourceBundle rb, String key, String defaultValue) {
+		return rb.containsKey(key) ? rb.getString(key).trim() : defaultValue;
+	}
+
+	public static void shutdownPool() {
+		synchronized (DBUtil.class) {
+			if (pool != null) {
+				pool.shutdown();
+				pool = null;
+			}
+		}
+	}
+
 	public static void closeConnection(Connection con) {
-		/*
-		 * try { if (con != null && !con.isClosed()) {
-		 * 
-		 * con.close(); } } catch (SQLException e) { // TODO Auto-generated catch block
-		 * e.printStackTrace(); }
-		 */
+		try {
+			if (con != null && !con.isClosed()) {
+				con.close();
+			}
+		} catch (SQLException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
 	}
 
 	public static void closeConnection(ResultSet rs) {
@@ -1,27 +1,105 @@
 package com.shashi.utility;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Generates product ("P") and transaction ("T") ids.
+ *
+ * An id is the prefix, the UTC time to the millisecond
+ * (yyyyMMddHHmmssSSS), a three digit node id (id.nodeId, 0-999, distinct for
+ * every server sharing the database) and a four digit sequence within that
+ * millisecond: P202401311745021230070042 is the 43rd product id of
+ * 17:45:02.123 UTC on node 7. Ids of one node are unique and strictly
+ * increasing, so they also sort by creation time; UTC is used because local
+ * time repeats an hour when the clocks fall back.
+ *
+ * The last issued (millisecond, sequence) pair lives in one AtomicLong that
+ * is advanced with compare-and-set, so no thread ever blocks. When the
+ * sequence of a millisecond is used up, or the clock steps backwards, ids
+ * continue from the next millisecond of the last issued id instead.
+ */
 public class IDUtil {
 
-	public static String generateId() {
-		String pId = null;
+	private static final int SEQUENCE_BITS = 14;
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+	private static final long MAX_SEQUENCE = 9999;
+
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS")
+			.withZone(ZoneOffset.UTC);
+
+	private static final String NODE_ID = String.format("%03d", nodeId());
+
+	// (millis << SEQUENCE_BITS) | sequence of the last issued id
+	private static final AtomicLong LAST = new AtomicLong();
 
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddhhmmss");
-		pId = sdf.format(new Date());
-		pId = "P" + pId;
+	// most recently formatted millisecond, shared by all ids issued in it
+	private static volatile Stamp stamp = new Stamp(-1, null);
 
-		return pId;
+	public static String generateId() {
+		return nextId("P");
 	}
 
 	public static String generateTransId() {
-		String tId = null;
+		return nextId("T");
+	}
+
+	private static String nextId(String prefix) {
+		long prev;
+		long next;
+		do {
+			prev = LAST.get();
+			long prevMillis = prev >>> SEQUENCE_BITS;
+			long now = System.currentTimeMillis();
+
+			if (now > prevMillis)
+				next = now << SEQUENCE_BITS;
+			else if ((prev & SEQUENCE_MASK) < MAX_SEQUENCE)
+				next = prev + 1;
+			else
+				next = (prevMillis + 1) << SEQUENCE_BITS;
+		} while (!LAST.compareAndSet(prev, next));
+
+		long millis = next >>> SEQUENCE_BITS;
+		long sequence = next & SEQUENCE_MASK;
+
+		Stamp current = stamp;
+		if (current.millis != millis) {
+			current = new Stamp(millis, TIME_FORMAT.format(Instant.ofEpochMilli(millis)) + NODE_ID);
+			stamp = current;
+		}
+
+		StringBuilder id = new StringBuilder(25);
+		id.append(prefix);
+		id.append(current.text);
+		if (sequence < 1000)
+			id.append('0');
+		if (sequence < 100)
+			id.append('0');
+		if (sequence < 10)
+			id.append('0');
+		id.append(sequence);
+
+		return id.toString();
+	}
+
+	private static int nodeId() {
+		int nodeId = DBUtil.getInt(ResourceBundle.getBundle("application"), "id.nodeId", 0);
+		if (nodeId < 0 || nodeId > 999)
+			throw new IllegalStateException("id.nodeId must be between 0 and 999, was " + nodeId);
+		return nodeId;
+	}
 
-		SimpleDateFormat sdf = new SimpleDateFormat("yyyyMMddhhmmss");
-		tId = sdf.format(new Date());
-		tId = "T" + tId;
+	private static final class Stamp {
+		final long millis;
+		final String text;
 
-		return tId;
+		Stamp(long millis, String text) {
+			this.millis = millis;
+			this.text = text;
+		}
 	}
 }
@@ -0,0 +1,70 @@
+package com.shashi.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Has many threads generate ids at once and checks that no id is issued
+ * twice and that every thread sees its ids strictly increasing. Needs no
+ * database.
+ *
+ * <pre>
+ * java -cp WEB-INF/classes:WEB-INF/lib/* com.shashi.utility.IDUtilStressTest [threads] [idsPerThread]
+ * </pre>
+ *
+ * Exits with status 1 if a check fails.
+ */
+public class IDUtilStressTest {
+
+	public static void main(String[] args) throws InterruptedException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+		int idsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+
+		Set<String> ids = ConcurrentHashMap.newKeySet(threads * idsPerThread);
+		AtomicInteger duplicates = new AtomicInteger();
+		AtomicInteger outOfOrder = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<Thread>();
+
+		for (int t = 0; t < threads; t++) {
+			boolean products = t % 2 == 0;
+			Thread worker = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				String previous = "";
+				for (int i = 0; i < idsPerThread; i++) {
+					String id = products ? IDUtil.generateId() : IDUtil.generateTransId();
+					// P and T ids share one sequence, so compare without the prefix
+					String key = id.substring(1);
+					if (!ids.add(key))
+						duplicates.incrementAndGet();
+					if (key.compareTo(previous) <= 0)
+						outOfOrder.incrementAndGet();
+					previous = key;
+				}
+			});
+			workers.add(worker);
+			worker.start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers)
+			worker.join();
+		double seconds = (System.nanoTime() - begin) / 1e9;
+
+		System.out.println(String.format("%d ids from %d threads in %.2f s (%.0f ids/s): %d duplicate(s), %d out of order",
+				(long) threads * idsPerThread, threads, seconds, threads * idsPerThread / seconds, duplicates.get(),
+				outOfOrder.get()));
+
+		if (duplicates.get() > 0 || outOfOrder.get() > 0)
+			System.exit(1);
+	}
+}
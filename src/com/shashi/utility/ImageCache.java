@@ -0,0 +1,363 @@
+package com.shashi.utility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte budgeted cache of image bytes held outside the Java heap, in direct
+ * ByteBuffers.
+ *
+ * Eviction is frequency aware: every lookup is counted in a small count-min
+ * sketch (4 bit counters, halved periodically so old popularity fades). When
+ * the budget is full a few random entries are sampled and the least
+ * frequently used one is the victim; a new image is only admitted if it has
+ * been asked for more often than that victim, so one crawl over the whole
+ * catalog cannot flush the images everybody looks at.
+ *
+ * Images larger than image.cache.maxEntryKilobytes are never cached.
+ */
+public class ImageCache {
+
+	private static final int SAMPLE_SIZE = 8;
+
+	private static final int TRANSFER_CHUNK = 8192;
+
+	private static final ThreadLocal<byte[]> TRANSFER_BUFFERS = ThreadLocal
+			.withInitial(() -> new byte[TRANSFER_CHUNK]);
+
+	private final long maxBytes;
+	private final int maxEntryBytes;
+
+	private final Map<String, CachedImage> entries = new ConcurrentHashMap<String, CachedImage>();
+	// same entries, for random sampling; guarded by this
+	private final List<CachedImage> slots = new ArrayList<CachedImage>();
+	private final FrequencySketch sketch;
+
+	private final AtomicLong residentBytes = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+
+	public ImageCache(long maxBytes, int maxEntryBytes) {
+		this.maxBytes = maxBytes;
+		this.maxEntryBytes = maxEntryBytes;
+		// sized for the number of average (64 KB) images that fit the budget
+		this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(64, maxBytes / 65536)));
+	}
+
+	public static ImageCache fromConfig() {
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+		int maxMegabytes = DBUtil.getInt(rb, "image.cache.maxMegabytes", 64);
+		int maxEntryKilobytes = DBUtil.getInt(rb, "image.cache.maxEntryKilobytes", 4096);
+		return new ImageCache(maxMegabytes * 1024L * 1024L, maxEntryKilobytes * 1024);
+	}
+
+	/**
+	 * @return the cached image, or null on a miss
+	 */
+	public CachedImage get(String key) {
+		sketch.increment(key);
+
+		CachedImage image = entries.get(key);
+		if (image == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return image;
+	}
+
+	/**
+	 * Copies the bytes off-heap if they are admitted to the cache.
+	 *
+	 * @return the image, backed by the cache or, when it was not admitted, by
+	 *         the given array
+	 */
+	public CachedImage put(String key, byte[] bytes, String tag) {
+		CachedImage candidate = new CachedImage(key, ByteBuffer.wrap(bytes), tag, contentTypeOf(bytes));
+
+		if (bytes.length > maxEntryBytes || bytes.length > maxBytes)
+			return candidate;
+
+		synchronized (this) {
+			CachedImage previous = entries.get(key);
+			if (previous != null)
+				removeEntry(previous);
+
+			while (residentBytes.get() + bytes.length > maxBytes) {
+				CachedImage victim = sampleVictim();
+				if (sketch.frequency(key) <= sketch.frequency(victim.key)) {
+					rejections.increment();
+					return candidate;
+				}
+				removeEntry(victim);
+				evictions.increment();
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+			buffer.put(bytes);
+			buffer.flip();
+
+			CachedImage image = new CachedImage(key, buffer.asReadOnlyBuffer(), tag, candidate.contentType);
+			image.slot = slots.size();
+			slots.add(image);
+			entries.put(key, image);
+			residentBytes.addAndGet(bytes.length);
+			return image;
+		}
+	}
+
+	/**
+	 * Caches an image already read under another key and tag, e.g. an
+	 * original standing in for a variant that cannot be rendered.
+	 */
+	public CachedImage put(String key, CachedImage image, String tag) {
+		ByteBuffer view = image.data.duplicate();
+		byte[] bytes = new byte[view.remaining()];
+		view.get(bytes);
+		return put(key, bytes, tag);
+	}
+
+	/**
+	 * @return an image that is not held by any cache, backed by the array
+	 */
+	public static CachedImage wrap(byte[] bytes, String tag) {
+		return new CachedImage(null, ByteBuffer.wrap(bytes), tag, contentTypeOf(bytes));
+	}
+
+	public synchronized void invalidate(String key) {
+		CachedImage image = entries.get(key);
+		if (image != null)
+			removeEntry(image);
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		slots.clear();
+		residentBytes.set(0);
+	}
+
+	private CachedImage sampleVictim() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		CachedImage victim = null;
+		int victimFrequency = Integer.MAX_VALUE;
+
+		for (int i = 0; i < SAMPLE_SIZE; i++) {
+			CachedImage sample = slots.get(random.nextInt(slots.size()));
+			int frequency = sketch.frequency(sample.key);
+			if (frequency < victimFrequency) {
+				victim = sample;
+				victimFrequency = frequency;
+			}
+		}
+		return victim;
+	}
+
+	/*
+	 * Swap-removes from the slot list. The direct buffer itself is released by
+	 * the garbage collector once no response is still writing from it.
+	 */
+	private void removeEntry(CachedImage image) {
+		entries.remove(image.key);
+
+		CachedImage last = slots.remove(slots.size() - 1);
+		if (last != image) {
+			slots.set(image.slot, last);
+			last.slot = image.slot;
+		}
+		residentBytes.addAndGet(-image.getLength());
+	}
+
+	public long getResidentBytes() {
+		return residentBytes.get();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public int getEntryCount() {
+		return entries.size();
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public double getHitRatio() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	public long getRejectionCount() {
+		return rejections.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "ImageCache[entries=" + getEntryCount() + ", residentBytes=" + getResidentBytes() + ", maxBytes="
+				+ maxBytes + ", hitRatio=" + String.format("%.3f", getHitRatio()) + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + ", rejections="
+				+ getRejectionCount() + "]";
+	}
+
+	/**
+	 * @return MIME type sniffed from the leading bytes of an image
+	 */
+	public static String contentTypeOf(byte[] image) {
+		if (image.length >= 3 && (image[0] & 0xff) == 0xff && (image[1] & 0xff) == 0xd8)
+			return "image/jpeg";
+		if (image.length >= 8 && (image[0] & 0xff) == 0x89 && image[1] == 'P' && image[2] == 'N' && image[3] == 'G')
+			return "image/png";
+		if (image.length >= 6 && image[0] == 'G' && image[1] == 'I' && image[2] == 'F')
+			return "image/gif";
+		if (image.length >= 12 && image[0] == 'R' && image[1] == 'I' && image[2] == 'F' && image[3] == 'F'
+				&& image[8] == 'W' && image[9] == 'E' && image[10] == 'B' && image[11] == 'P')
+			return "image/webp";
+		if (image.length >= 2 && image[0] == 'B' && image[1] == 'M')
+			return "image/bmp";
+		return "application/octet-stream";
+	}
+
+	public static final class CachedImage {
+		private final String key;
+		private final ByteBuffer data;
+		private final String tag;
+		private final String contentType;
+		int slot;
+
+		CachedImage(String key, ByteBuffer data, String tag, String contentType) {
+			this.key = key;
+			this.data = data;
+			this.tag = tag;
+			this.contentType = contentType;
+		}
+
+		public String getTag() {
+			return tag;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public int getLength() {
+			return data.remaining();
+		}
+
+		/**
+		 * Streams the image through a small per-thread buffer, never copying it
+		 * into one heap array.
+		 */
+		public void writeTo(OutputStream out) throws IOException {
+			ByteBuffer view = data.duplicate();
+
+			if (view.hasArray()) {
+				out.write(view.array(), view.arrayOffset() + view.position(), view.remaining());
+				return;
+			}
+
+			byte[] chunk = TRANSFER_BUFFERS.get();
+			while (view.hasRemaining()) {
+				int n = Math.min(chunk.length, view.remaining());
+				view.get(chunk, 0, n);
+				out.write(chunk, 0, n);
+			}
+		}
+	}
+
+	/*
+	 * Count-min sketch with four rows of 4 bit counters packed into longs.
+	 * Updates race without locking; a lost increment only makes an estimate
+	 * slightly low. After 10 * width increments every counter is halved.
+	 */
+	private static final class FrequencySketch {
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+				0xcbf29ce484222325L };
+
+		private final long[] table;
+		private final int mask;
+		private final int sampleSize;
+		private int additions;
+
+		FrequencySketch(int expectedEntries) {
+			int width = Integer.highestOneBit(Math.max(16, expectedEntries - 1) << 1);
+			this.table = new long[width];
+			this.mask = width - 1;
+			this.sampleSize = 10 * width;
+		}
+
+		int frequency(String key) {
+			int hash = spread(key.hashCode());
+			int min = 15;
+			for (int row = 0; row < 4; row++)
+				min = Math.min(min, counter(row, hash));
+			return min;
+		}
+
+		void increment(String key) {
+			int hash = spread(key.hashCode());
+			boolean added = false;
+			for (int row = 0; row < 4; row++) {
+				int index = indexOf(row, hash);
+				int shift = shiftOf(row, hash);
+				long word = table[index];
+				if (((word >>> shift) & 0xfL) < 15) {
+					table[index] = word + (1L << shift);
+					added = true;
+				}
+			}
+			if (added && ++additions >= sampleSize)
+				reset();
+		}
+
+		private int counter(int row, int hash) {
+			return (int) ((table[indexOf(row, hash)] >>> shiftOf(row, hash)) & 0xfL);
+		}
+
+		/*
+		 * Every long holds 16 counters; each row owns 4 of them and the hash
+		 * picks one.
+		 */
+		private static int shiftOf(int row, int hash) {
+			return (row * 16) + ((hash >>> (row * 8)) & 3) * 4;
+		}
+
+		private int indexOf(int row, int hash) {
+			long h = (hash + SEEDS[row]) * SEEDS[row];
+			h += h >>> 32;
+			return (int) h & mask;
+		}
+
+		private void reset() {
+			additions = 0;
+			for (int i = 0; i < table.length; i++)
+				table[i] = (table[i] >>> 1) & 0x7777777777777777L;
+		}
+
+		private static int spread(int x) {
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			x = ((x >>> 16) ^ x) * 0x45d9f3b;
+			return (x >>> 16) ^ x;
+		}
+	}
+}
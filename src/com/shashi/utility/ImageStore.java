@@ -0,0 +1,137 @@
+package com.shashi.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ResourceBundle;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Content addressed store for product images on the local file system.
+ *
+ * A file is named after the SHA-256 of its bytes and placed two directory
+ * levels deep (ab/cd/abcd...), so identical uploads are stored once and a
+ * stored file never changes. The product row only keeps the hash
+ * (product.image_hash).
+ *
+ * image.storage.dir is the root directory. New uploads go to the store with
+ * image.storage=file; with the default image.storage=db they stay in the
+ * product.image BLOB, while images moved to the store earlier remain
+ * readable.
+ */
+public class ImageStore {
+
+	private final Path root;
+	private final boolean writeEnabled;
+
+	public ImageStore(Path root, boolean writeEnabled) {
+		this.root = root;
+		this.writeEnabled = writeEnabled;
+	}
+
+	/**
+	 * @return the configured store, or null if image.storage.dir is not set
+	 */
+	public static ImageStore fromConfig() {
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+		if (!rb.containsKey("image.storage.dir") || rb.getString("image.storage.dir").trim().isEmpty())
+			return null;
+
+		boolean writeEnabled = rb.containsKey("image.storage")
+				&& "file".equalsIgnoreCase(rb.getString("image.storage").trim());
+		return new ImageStore(Paths.get(rb.getString("image.storage.dir").trim()), writeEnabled);
+	}
+
+	/**
+	 * @return true if new uploads are to be stored here rather than in the
+	 *         database
+	 */
+	public boolean isWriteEnabled() {
+		return writeEnabled;
+	}
+
+	/**
+	 * Streams the input into the store.
+	 *
+	 * @return hex SHA-256 of the stored bytes, or null if the input was empty
+	 */
+	public String store(InputStream in) throws IOException {
+		Path tmpDir = root.resolve("tmp");
+		Files.createDirectories(tmpDir);
+		Path tmp = Files.createTempFile(tmpDir, "upload", ".part");
+
+		try {
+			MessageDigest digest = sha256();
+			long size;
+			try (DigestInputStream din = new DigestInputStream(in, digest);
+					OutputStream out = Files.newOutputStream(tmp)) {
+				size = copy(din, out);
+			}
+			if (size == 0)
+				return null;
+
+			String hash = Hex.encodeHexString(digest.digest());
+			Path target = pathOf(hash);
+
+			if (!Files.exists(target)) {
+				Files.createDirectories(target.getParent());
+				try {
+					Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+				} catch (FileAlreadyExistsException e) {
+					// stored concurrently by another upload of the same image
+				}
+			}
+			return hash;
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	public Path pathOf(String hash) {
+		return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+	}
+
+	/**
+	 * @return the stored bytes, or null if there is no such file
+	 */
+	public byte[] read(String hash) throws IOException {
+		try {
+			return Files.readAllBytes(pathOf(hash));
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	private static long copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[8192];
+		long total = 0;
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+			total += n;
+		}
+		return total;
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.shashi.utility;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Command line tool for the content addressed image store.
+ *
+ * <pre>
+ * java -cp WEB-INF/classes:WEB-INF/lib/* com.shashi.utility.ImageStoreMigration [migrate | gc]
+ * </pre>
+ *
+ * migrate (the default) moves every product.image BLOB into the store under
+ * image.storage.dir, one product at a time, recording its hash in
+ * product.image_hash and clearing the BLOB. It can be run while the shop is
+ * up and rerun after an interruption. Set image.storage=file afterwards so new
+ * uploads go to the store as well.
+ *
+ * gc deletes stored files no product refers to any more (replaced or removed
+ * images), skipping files younger than an hour so an upload whose product row
+ * is not written yet is never touched.
+ */
+public class ImageStoreMigration {
+
+	private static final int BATCH_SIZE = 100;
+
+	private static final long GC_GRACE_MILLIS = 60 * 60 * 1000L;
+
+	public static void main(String[] args) throws Exception {
+		String mode = args.length > 0 ? args[0] : "migrate";
+
+		ImageStore store = ImageStore.fromConfig();
+		if (store == null) {
+			System.err.println("Set image.storage.dir in application.properties first");
+			System.exit(1);
+		}
+
+		try {
+			if ("migrate".equals(mode)) {
+				migrate(store);
+			} else if ("gc".equals(mode)) {
+				collectGarbage(store);
+			} else {
+				System.err.println("Usage: ImageStoreMigration [migrate | gc]");
+				System.exit(1);
+			}
+		} finally {
+			DBUtil.shutdownPool();
+		}
+	}
+
+	private static void migrate(ImageStore store) throws SQLException, IOException {
+		int moved = 0;
+		long bytes = 0;
+		String lastPid = "";
+
+		while (true) {
+			List<String> pids = nextBlobProducts(lastPid);
+			if (pids.isEmpty())
+				break;
+
+			for (String pid : pids) {
+				long size = moveImage(store, pid);
+				if (size >= 0) {
+					moved++;
+					bytes += size;
+				}
+				lastPid = pid;
+			}
+			System.out.println("Moved " + moved + " images (" + bytes / 1024 + " KB), last product " + lastPid);
+		}
+
+		System.out.println("Done: " + moved + " images moved to " + store.getRoot());
+	}
+
+	private static List<String> nextBlobProducts(String afterPid) throws SQLException {
+		List<String> pids = new ArrayList<String>();
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select pid from product where pid > ? and image is not null"
+					+ " and image_hash is null order by pid limit ?");
+			ps.setString(1, afterPid);
+			ps.setInt(2, BATCH_SIZE);
+
+			rs = ps.executeQuery();
+
+			while (rs.next())
+				pids.add(rs.getString("pid"));
+
+		} finally {
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(con);
+		}
+
+		return pids;
+	}
+
+	/*
+	 * @return the image size, or -1 if the image was changed or moved
+	 * concurrently
+	 */
+	private static long moveImage(ImageStore store, String pid) throws SQLException, IOException {
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select image, length(image) from product where pid=? and image_hash is null");
+			ps.setString(1, pid);
+
+			rs = ps.executeQuery();
+
+			if (!rs.next())
+				return -1;
+
+			String hash;
+			try (InputStream in = rs.getBinaryStream(1)) {
+				if (in == null)
+					return -1;
+				hash = store.store(in);
+			}
+			long size = rs.getLong(2);
+
+			// only clears the BLOB if it is still the one that was copied
+			ps2 = con.prepareStatement(
+					"update product set image_hash=?, image=null where pid=? and image_hash is null and sha2(image, 256)=?");
+			ps2.setString(1, hash);
+			ps2.setString(2, pid);
+			ps2.setString(3, hash);
+
+			return ps2.executeUpdate() > 0 ? size : -1;
+
+		} finally {
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(ps2);
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(con);
+		}
+	}
+
+	private static void collectGarbage(ImageStore store) throws SQLException, IOException {
+		Set<String> referenced = new HashSet<String>();
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select distinct image_hash from product where image_hash is not null");
+
+			rs = ps.executeQuery();
+
+			while (rs.next())
+				referenced.add(rs.getString(1));
+
+		} finally {
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(con);
+		}
+
+		long cutoff = System.currentTimeMillis() - GC_GRACE_MILLIS;
+		List<Path> garbage = new ArrayList<Path>();
+
+		try (Stream<Path> files = Files.walk(store.getRoot())) {
+			files.filter(Files::isRegularFile).forEach(file -> {
+				try {
+					if (Files.getLastModifiedTime(file).toMillis() >= cutoff)
+						return;
+					String name = file.getFileName().toString();
+					// leftovers of interrupted uploads live in tmp
+					if (file.getParent().endsWith("tmp") || !referenced.contains(name))
+						garbage.add(file);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			});
+		}
+
+		long bytes = 0;
+		for (Path file : garbage) {
+			bytes += Files.size(file);
+			Files.deleteIfExists(file);
+		}
+
+		System.out.println("Deleted " + garbage.size() + " unreferenced files (" + bytes / 1024 + " KB), "
+				+ referenced.size() + " images in use");
+	}
+}
@@ -0,0 +1,166 @@
+package com.shashi.utility;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Downscaled renditions of a product image, stored next to the uploaded
+ * original in the product_image_variant table.
+ *
+ * Every variant fits the original into a bounding box twice the CSS size the
+ * pages display it at (for high density screens), keeping the aspect ratio,
+ * and is encoded as JPEG. When that comes out larger than the original (small,
+ * well compressed uploads) the original is kept instead.
+ */
+public enum ImageVariant {
+
+	/** cart, order and stock tables (50 x 50 px) */
+	THUMB("thumb", 100, 100),
+
+	/** product grids (up to 180 x 150 px) */
+	MEDIUM("medium", 360, 300);
+
+	/*
+	 * Part of the stored variant name and of every variant ETag: bump it when
+	 * the sizes or the encoding change, so stored renditions are regenerated
+	 * on first use and browsers drop the ones they cached.
+	 */
+	private static final int VERSION = 1;
+
+	private static final float JPEG_QUALITY = 0.85f;
+
+	private final String key;
+	private final int maxWidth;
+	private final int maxHeight;
+
+	private ImageVariant(String key, int maxWidth, int maxHeight) {
+		this.key = key;
+		this.maxWidth = maxWidth;
+		this.maxHeight = maxHeight;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return value of product_image_variant.variant for this rendition
+	 */
+	public String getStoredName() {
+		return key + VERSION;
+	}
+
+	/**
+	 * @return the variant named by a request parameter, or null for the
+	 *         original image
+	 */
+	public static ImageVariant fromKey(String key) {
+		for (ImageVariant variant : values()) {
+			if (variant.key.equalsIgnoreCase(key))
+				return variant;
+		}
+		return null;
+	}
+
+	/**
+	 * @return entity tag of this rendition of the image whose tag is given;
+	 *         renditions are a pure function of the original, so no hashing
+	 *         of the variant bytes is needed
+	 */
+	public String tagOf(String originalTag) {
+		return originalTag + "-" + getStoredName();
+	}
+
+	/**
+	 * @return the rendition (JPEG, or the original itself if that is smaller),
+	 *         or null if the original is not in a format ImageIO can decode
+	 */
+	public byte[] render(byte[] original) throws IOException {
+		BufferedImage source = ImageIO.read(new ByteArrayInputStream(original));
+		if (source == null)
+			return null;
+
+		double scale = Math.min(1.0,
+				Math.min((double) maxWidth / source.getWidth(), (double) maxHeight / source.getHeight()));
+		int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+		BufferedImage scaled = toRgb(source);
+
+		// halve in bilinear steps: a single large step skips most source pixels
+		while (scaled.getWidth() / 2 >= width && scaled.getHeight() / 2 >= height)
+			scaled = draw(scaled, scaled.getWidth() / 2, scaled.getHeight() / 2);
+
+		if (scaled.getWidth() != width || scaled.getHeight() != height)
+			scaled = draw(scaled, width, height);
+
+		byte[] rendered = encodeJpeg(scaled);
+
+		// small originals can grow when re-encoded; ShowImage sniffs the type
+		return rendered.length < original.length ? rendered : original;
+	}
+
+	/*
+	 * JPEG has no alpha channel: transparent areas are painted white.
+	 */
+	private static BufferedImage toRgb(BufferedImage source) {
+		if (source.getType() == BufferedImage.TYPE_INT_RGB)
+			return source;
+
+		BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = rgb.createGraphics();
+		try {
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, rgb.getWidth(), rgb.getHeight());
+			g.drawImage(source, 0, 0, null);
+		} finally {
+			g.dispose();
+		}
+		return rgb;
+	}
+
+	private static BufferedImage draw(BufferedImage source, int width, int height) {
+		BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = target.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+			g.drawImage(source, 0, 0, width, height, null);
+		} finally {
+			g.dispose();
+		}
+		return target;
+	}
+
+	private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+		ImageWriter writer = writers.next();
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ImageOutputStream out = ImageIO.createImageOutputStream(baos);
+		try {
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			param.setCompressionQuality(JPEG_QUALITY);
+
+			writer.setOutput(out);
+			writer.write(null, new IIOImage(image, null, null), param);
+		} finally {
+			writer.dispose();
+			out.close();
+		}
+		return baos.toByteArray();
+	}
+}
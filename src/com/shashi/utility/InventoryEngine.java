@@ -0,0 +1,467 @@
+package com.shashi.utility;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Sells product stock without ever taking product.pquantity below zero.
+ *
+ * A normal sale is a single conditional update (pquantity >= n), so two
+ * checkouts racing for the last unit cannot both succeed.
+ *
+ * A product selling more than inventory.hot.salesPerSecond times a second is
+ * hot: instead of locking its row for every sale, stock is leased from MySQL
+ * in blocks of up to inventory.leaseSize units (never more than the row
+ * holds) and sold from striped in-memory counters, so concurrent buyers mostly touch
+ * different cache lines and MySQL sees one update per block. Once the product
+ * cools down the unsold leased units are written back. Leased units are
+ * already subtracted in the database, so a crash can only understate stock,
+ * never oversell it; shutdown() returns every lease.
+ */
+public class InventoryEngine {
+
+	public enum Outcome {
+		SOLD, INSUFFICIENT_STOCK, UNKNOWN_PRODUCT, INVALID_QUANTITY, ERROR
+	}
+
+	// counters are spread this many longs apart so stripes do not share a
+	// cache line
+	private static final int PAD = 8;
+
+	private final int hotSalesPerSecond;
+	private final int leaseSize;
+	private final long coolDownMillis;
+	private final int stripes;
+
+	private final Map<String, Stock> stocks = new ConcurrentHashMap<String, Stock>();
+	private final ScheduledExecutorService writeBehind;
+
+	public InventoryEngine(int hotSalesPerSecond, int leaseSize, long coolDownMillis, int stripes,
+			long flushIntervalMillis) {
+		this.hotSalesPerSecond = hotSalesPerSecond;
+		this.leaseSize = leaseSize;
+		this.coolDownMillis = coolDownMillis;
+		this.stripes = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+
+		this.writeBehind = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "inventory-write-behind");
+			t.setDaemon(true);
+			return t;
+		});
+		writeBehind.scheduleWithFixedDelay(this::returnIdleLeases, flushIntervalMillis, flushIntervalMillis,
+				TimeUnit.MILLISECONDS);
+	}
+
+	public static InventoryEngine fromConfig() {
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+		int hotSalesPerSecond = DBUtil.getInt(rb, "inventory.hot.salesPerSecond", 20);
+		int leaseSize = DBUtil.getInt(rb, "inventory.leaseSize", 20);
+		int coolDownMillis = DBUtil.getInt(rb, "inventory.hot.coolDownMillis", 10000);
+		int stripes = DBUtil.getInt(rb, "inventory.stripes", Runtime.getRuntime().availableProcessors());
+		int flushIntervalMillis = DBUtil.getInt(rb, "inventory.flushIntervalMillis", 1000);
+		return new InventoryEngine(hotSalesPerSecond, leaseSize, coolDownMillis, stripes, flushIntervalMillis);
+	}
+
+	/**
+	 * Takes n units of a product out of stock.
+	 *
+	 * Not for use inside a transaction: leasing stock for a hot product
+	 * commits on its own, and the pool would hand it the caller's connection,
+	 * so a sale that needs a new lease then fails with ERROR instead.
+	 */
+	public Outcome sell(String prodId, int n) {
+		if (n <= 0)
+			return Outcome.INVALID_QUANTITY;
+
+		Stock stock = stocks.computeIfAbsent(prodId, Stock::new);
+		long now = System.currentTimeMillis();
+		stock.recordSale(now);
+
+		if (stock.leased() > 0 || stock.isHot(now)) {
+			if (stock.trySell(n))
+				return Outcome.SOLD;
+			return stock.sellWithLease(n);
+		}
+
+		return sellFromDatabase(prodId, n);
+	}
+
+	/**
+	 * Takes n units out of the product's leased stock without going to the
+	 * database, for callers that take the remaining units from the product row
+	 * inside their own transaction. Counts as a sale for hot detection; when a
+	 * hot product's lease runs short it is topped up in the background.
+	 *
+	 * @return false if the units have to come from the product row
+	 */
+	public boolean takeLeased(String prodId, int n) {
+		if (n <= 0)
+			return false;
+
+		Stock stock = stocks.computeIfAbsent(prodId, Stock::new);
+		long now = System.currentTimeMillis();
+		stock.recordSale(now);
+
+		if (stock.trySell(n))
+			return true;
+
+		if (stock.isHot(now) && stock.refillPending.compareAndSet(false, true))
+			writeBehind.execute(stock::refill);
+		return false;
+	}
+
+	/**
+	 * Puts n units back, e.g. when the order they were sold for could not be
+	 * placed.
+	 */
+	public boolean restock(String prodId, int n) {
+		if (n <= 0)
+			return false;
+
+		Stock stock = stocks.get(prodId);
+		if (stock != null && stock.restock(n))
+			return true;
+		return addToDatabase(prodId, n);
+	}
+
+	/**
+	 * @return units of the product held in memory: they are already subtracted
+	 *         from pquantity but still for sale
+	 */
+	public int leasedUnits(String prodId) {
+		Stock stock = stocks.get(prodId);
+		return stock == null ? 0 : (int) stock.leased();
+	}
+
+	/**
+	 * Writes the product's leased units back to the database, before its
+	 * quantity is overwritten by an admin edit or the product is removed.
+	 */
+	public void returnLease(String prodId) {
+		Stock stock = stocks.get(prodId);
+		if (stock != null)
+			stock.returnLease();
+	}
+
+	/**
+	 * Stops write-behind and returns every lease.
+	 */
+	public void shutdown() {
+		writeBehind.shutdownNow();
+		for (Stock stock : stocks.values())
+			stock.returnLease();
+	}
+
+	private void returnIdleLeases() {
+		long now = System.currentTimeMillis();
+		for (Stock stock : stocks.values()) {
+			if (stock.isHot(now))
+				continue;
+			stock.returnLease();
+			stock.retireIfIdle(now);
+		}
+	}
+
+	private Outcome sellFromDatabase(String prodId, int n) {
+		Outcome outcome = Outcome.ERROR;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement("update product set pquantity=pquantity - ? where pid=? and pquantity >= ?");
+
+			ps.setInt(1, n);
+			ps.setString(2, prodId);
+			ps.setInt(3, n);
+
+			int k = ps.executeUpdate();
+
+			outcome = k > 0 ? Outcome.SOLD : missingOrShort(prodId);
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		return outcome;
+	}
+
+	private Outcome missingOrShort(String prodId) throws SQLException {
+		Outcome outcome = Outcome.UNKNOWN_PRODUCT;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select pquantity from product where pid=?");
+
+			ps.setString(1, prodId);
+
+			rs = ps.executeQuery();
+
+			if (rs.next())
+				outcome = Outcome.INSUFFICIENT_STOCK;
+
+		} finally {
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(con);
+		}
+
+		return outcome;
+	}
+
+	/*
+	 * Takes up to want units out of the product row in one short transaction.
+	 * The pool hands a thread the connection it already holds, so this
+	 * refuses to run while that connection has a transaction open: committing
+	 * here would commit the caller's work halfway.
+	 *
+	 * @return units taken, or -1 if there is no such product
+	 */
+	private int leaseFromDatabase(String prodId, int want) throws SQLException {
+		int taken = -1;
+
+		Connection con = DBUtil.provideConnection();
+		if (con == null)
+			throw new SQLException("No database connection to lease stock of " + prodId);
+
+		if (!con.getAutoCommit()) {
+			DBUtil.closeConnection(con);
+			throw new SQLException("Cannot lease stock of " + prodId + " inside an open transaction");
+		}
+
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+		ResultSet rs = null;
+
+		try {
+			con.setAutoCommit(false);
+
+			ps = con.prepareStatement("select pquantity from product where pid=? for update");
+			ps.setString(1, prodId);
+
+			rs = ps.executeQuery();
+
+			if (rs.next()) {
+				taken = Math.max(0, Math.min(want, rs.getInt("pquantity")));
+
+				if (taken > 0) {
+					ps2 = con.prepareStatement("update product set pquantity=pquantity - ? where pid=?");
+					ps2.setInt(1, taken);
+					ps2.setString(2, prodId);
+					ps2.executeUpdate();
+				}
+			}
+
+			con.commit();
+
+		} catch (SQLException e) {
+			con.rollback();
+			throw e;
+		} finally {
+			con.setAutoCommit(true);
+			DBUtil.closeConnection(ps);
+			DBUtil.closeConnection(ps2);
+			DBUtil.closeConnection(rs);
+			DBUtil.closeConnection(con);
+		}
+
+		return taken;
+	}
+
+	private boolean addToDatabase(String prodId, int n) {
+		boolean flag = false;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement("update product set pquantity=pquantity + ? where pid=?");
+
+			ps.setInt(1, n);
+			ps.setString(2, prodId);
+
+			flag = ps.executeUpdate() > 0;
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		return flag;
+	}
+
+	private final class Stock {
+		final String prodId;
+		final AtomicLongArray counters = new AtomicLongArray(stripes * PAD);
+		final AtomicLong lastSale = new AtomicLong();
+		final AtomicLong windowStart = new AtomicLong();
+		final AtomicInteger windowSales = new AtomicInteger();
+		final AtomicBoolean refillPending = new AtomicBoolean();
+		volatile long hotUntil;
+
+		// set once the Stock has left the map; units must not be added to it
+		// from then on, they would never be written back
+		volatile boolean retired;
+
+		Stock(String prodId) {
+			this.prodId = prodId;
+		}
+
+		void recordSale(long now) {
+			lastSale.set(now);
+
+			long start = windowStart.get();
+			if (now - start >= 1000 && windowStart.compareAndSet(start, now))
+				windowSales.set(0);
+
+			if (windowSales.incrementAndGet() > hotSalesPerSecond)
+				hotUntil = now + coolDownMillis;
+		}
+
+		boolean isHot(long now) {
+			return now < hotUntil;
+		}
+
+		long leased() {
+			long total = 0;
+			for (int i = 0; i < stripes; i++)
+				total += counters.get(i * PAD);
+			return total;
+		}
+
+		/*
+		 * Lock free: decrements the first stripe, starting at a random one,
+		 * that holds at least n units.
+		 */
+		boolean trySell(int n) {
+			int start = ThreadLocalRandom.current().nextInt(stripes);
+			for (int i = 0; i < stripes; i++) {
+				int slot = ((start + i) & (stripes - 1)) * PAD;
+				long units;
+				while ((units = counters.get(slot)) >= n) {
+					if (counters.compareAndSet(slot, units, units - n))
+						return true;
+				}
+			}
+			return false;
+		}
+
+		/*
+		 * Slow path: pools the units scattered over the stripes and leases
+		 * more from MySQL if they are not enough.
+		 */
+		synchronized Outcome sellWithLease(int n) {
+			if (trySell(n))
+				return Outcome.SOLD;
+
+			// cooled down meanwhile
+			if (retired)
+				return sellFromDatabase(prodId, n);
+
+			long units = drain();
+
+			if (units < n) {
+				int taken;
+				try {
+					taken = leaseFromDatabase(prodId, (int) Math.max(leaseSize, n - units));
+				} catch (SQLException e) {
+					e.printStackTrace();
+					counters.addAndGet(0, units);
+					return Outcome.ERROR;
+				}
+				if (taken < 0) {
+					counters.addAndGet(0, units);
+					return Outcome.UNKNOWN_PRODUCT;
+				}
+				units += taken;
+			}
+
+			if (units < n) {
+				counters.addAndGet(0, units);
+				return Outcome.INSUFFICIENT_STOCK;
+			}
+
+			counters.addAndGet(0, units - n);
+			return Outcome.SOLD;
+		}
+
+		/*
+		 * Runs on the write-behind thread, so the lease transaction never
+		 * shares a connection with a caller's transaction.
+		 */
+		synchronized void refill() {
+			refillPending.set(false);
+
+			if (retired || !isHot(System.currentTimeMillis()) || leased() >= leaseSize)
+				return;
+			try {
+				int taken = leaseFromDatabase(prodId, leaseSize);
+				if (taken > 0)
+					counters.addAndGet(0, taken);
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+
+		/*
+		 * Adds n units to a lease still in use.
+		 *
+		 * @return false if they have to go back to the product row
+		 */
+		synchronized boolean restock(int n) {
+			if (retired || leased() == 0)
+				return false;
+			counters.addAndGet(0, n);
+			return true;
+		}
+
+		/*
+		 * Drops the Stock of a product without a lease that has not sold for a
+		 * cool down period. Checked and removed under the monitor every method
+		 * adding units holds, so none of them can add to it afterwards.
+		 */
+		synchronized void retireIfIdle(long now) {
+			if (leased() == 0 && now - lastSale.get() > coolDownMillis) {
+				retired = true;
+				stocks.remove(prodId, this);
+			}
+		}
+
+		synchronized void returnLease() {
+			long units = drain();
+			if (units > 0 && !addToDatabase(prodId, (int) units))
+				counters.addAndGet(0, units);
+		}
+
+		private long drain() {
+			long units = 0;
+			for (int i = 0; i < stripes; i++)
+				units += counters.getAndSet(i * PAD, 0);
+			return units;
+		}
+	}
+}
@@ -2,6 +2,8 @@ package com.shashi.utility;
 
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -14,40 +16,59 @@ import jakarta.mail.Transport;
 import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 
+/**
+ * Sends mails over SMTP. The mail Session is built once from
+ * application.properties, and connected Transports are kept in a pool of up
+ * to mailer.transport.poolSize, so consecutive mails reuse one connection
+ * (and its STARTTLS and AUTH) instead of opening a new one each. A pooled
+ * connection the server has dropped is replaced on the next send.
+ */
 public class JavaMailUtil {
-	public static void sendMail(String recipientMailId) throws MessagingException {
 
-		System.out.println("Preparing to send Mail");
-		Properties properties = new Properties();
-		String host = "smtp.gmail.com";
-		properties.put("mail.smtp.host", host);
-		properties.put("mail.transport.protocol", "smtp");
-		properties.put("mail.smtp.auth", "true");
-		properties.put("mail.smtp.starttls.enable", "true");
-		properties.put("mail.smtp.port", "587");
+	private static final Logger LOGGER = Logger.getLogger(JavaMailUtil.class.getName());
 
-		ResourceBundle rb = ResourceBundle.getBundle("application");
+	private static final class Smtp {
+		static final String EMAIL_ID;
+		static final Session SESSION;
+		static final BlockingQueue<Transport> IDLE;
 
-		String emailId = rb.getString("mailer.email");
-		String passWord = rb.getString("mailer.password");
+		static {
+			ResourceBundle rb = ResourceBundle.getBundle("application");
 
-		properties.put("mail.user", emailId);
-		properties.put("mail.password", passWord);
+			Properties properties = new Properties();
+			String host = DBUtil.getString(rb, "mailer.host", "smtp.gmail.com");
+			properties.put("mail.smtp.host", host);
+			properties.put("mail.transport.protocol", "smtp");
+			properties.put("mail.smtp.auth", DBUtil.getString(rb, "mailer.auth", "true"));
+			properties.put("mail.smtp.starttls.enable", DBUtil.getString(rb, "mailer.starttls", "true"));
+			properties.put("mail.smtp.port", DBUtil.getString(rb, "mailer.port", "587"));
 
-		Session session = Session.getInstance(properties, new Authenticator() {
+			String emailId = rb.getString("mailer.email");
+			String passWord = rb.getString("mailer.password");
 
-			@Override
-			protected PasswordAuthentication getPasswordAuthentication() {
-				return new PasswordAuthentication(emailId, passWord);
-			}
+			properties.put("mail.user", emailId);
+			properties.put("mail.password", passWord);
+
+			EMAIL_ID = emailId;
+			SESSION = Session.getInstance(properties, new Authenticator() {
+
+				@Override
+				protected PasswordAuthentication getPasswordAuthentication() {
+					return new PasswordAuthentication(emailId, passWord);
+				}
+
+			});
+			IDLE = new ArrayBlockingQueue<Transport>(Math.max(1, DBUtil.getInt(rb, "mailer.transport.poolSize", 4)));
+		}
+	}
 
-		});
+	public static void sendMail(String recipientMailId) throws MessagingException {
 
-		Message message = prepareMessage(session, emailId, recipientMailId);
+		Message message = prepareMessage(Smtp.SESSION, Smtp.EMAIL_ID, recipientMailId);
 
-		Transport.send(message);
+		send(message);
 
-		System.out.println("Message Sent Successfully!");
+		LOGGER.log(Level.FINE, "Mail sent to {0}", recipientMailId);
 
 	}
 
@@ -64,7 +85,7 @@ public class JavaMailUtil {
 			return message;
 
 		} catch (Exception exception) {
-			Logger.getLogger(JavaMailUtil.class.getName()).log(Level.SEVERE, null, exception);
+			LOGGER.log(Level.SEVERE, null, exception);
 		}
 		return null;
 
@@ -72,37 +93,11 @@ public class JavaMailUtil {
 
 	protected static void sendMail(String recipient, String subject, String htmlTextMessage) throws MessagingException {
 
-		System.out.println("Preparing to send Mail");
-		Properties properties = new Properties();
-		String host = "smtp.gmail.com";
-		properties.put("mail.smtp.host", host);
-		properties.put("mail.transport.protocol", "smtp");
-		properties.put("mail.smtp.auth", "true");
-		properties.put("mail.smtp.starttls.enable", "true");
-		properties.put("mail.smtp.port", "587");
-
-		ResourceBundle rb = ResourceBundle.getBundle("application");
-
-		String emailId = rb.getString("mailer.email");
-		String passWord = rb.getString("mailer.password");
-
-		properties.put("mail.user", emailId);
-		properties.put("mail.password", passWord);
-
-		Session session = Session.getInstance(properties, new Authenticator() {
-
-			@Override
-			protected PasswordAuthentication getPasswordAuthentication() {
-				return new PasswordAuthentication(emailId, passWord);
-			}
+		Message message = prepareMessage(Smtp.SESSION, Smtp.EMAIL_ID, recipient, subject, htmlTextMessage);
 
-		});
+		send(message);
 
-		Message message = prepareMessage(session, emailId, recipient, subject, htmlTextMessage);
-
-		Transport.send(message);
-
-		System.out.println("Message Sent Successfully!");
+		LOGGER.log(Level.FINE, "Mail sent to {0}", recipient);
 
 	}
 
@@ -120,9 +115,64 @@ public class JavaMailUtil {
 			return message;
 
 		} catch (Exception exception) {
-			Logger.getLogger(JavaMailUtil.class.getName()).log(Level.SEVERE, null, exception);
+			LOGGER.log(Level.SEVERE, null, exception);
 		}
 		return null;
 
 	}
+
+	/*
+	 * Sends over a pooled connection. If that fails the connection is
+	 * dropped and the mail is tried once more on a new one, since the server
+	 * may have closed an idle connection.
+	 */
+	private static void send(Message message) throws MessagingException {
+		if (message == null)
+			throw new MessagingException("Message could not be prepared");
+
+		message.saveChanges();
+
+		Transport transport = Smtp.IDLE.poll();
+		boolean pooled = transport != null;
+
+		while (true) {
+			try {
+				if (transport == null)
+					transport = Smtp.SESSION.getTransport("smtp");
+				if (!transport.isConnected())
+					transport.connect();
+
+				transport.sendMessage(message, message.getAllRecipients());
+				break;
+
+			} catch (MessagingException e) {
+				close(transport);
+				transport = null;
+				if (!pooled)
+					throw e;
+				pooled = false;
+			}
+		}
+
+		if (!Smtp.IDLE.offer(transport))
+			close(transport);
+	}
+
+	/**
+	 * Closes the pooled SMTP connections.
+	 */
+	public static void shutdown() {
+		Transport transport;
+		while ((transport = Smtp.IDLE.poll()) != null)
+			close(transport);
+	}
+
+	private static void close(Transport transport) {
+		try {
+			if (transport != null)
+				transport.close();
+		} catch (MessagingException e) {
+			// already gone
+		}
+	}
 }
@@ -0,0 +1,116 @@
+package com.shashi.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.ResourceBundle;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.mail.Authenticator;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.PasswordAuthentication;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+
+/**
+ * Compares mails per second with a new Session and SMTP connection per mail
+ * (how JavaMailUtil used to send) against JavaMailUtil's shared Session and
+ * pooled connections. Point mailer.host and mailer.port in
+ * application.properties at a local SMTP server first; every mail is
+ * really sent.
+ *
+ * <pre>
+ * java -cp WEB-INF/classes:WEB-INF/lib/* com.shashi.utility.MailBenchmark [threads] [mailsPerThread] [recipient]
+ * </pre>
+ */
+public class MailBenchmark {
+
+	private interface Sender {
+		void send(String recipient, String subject, String htmlTextMessage) throws MessagingException;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		int mailsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 250;
+		String recipient = args.length > 2 ? args[2] : "bench-mail@example.invalid";
+
+		// warm up both paths and the JIT
+		run("warm-up", threads, Math.min(20, mailsPerThread), recipient, MailBenchmark::sendUnpooled);
+		run("warm-up", threads, Math.min(20, mailsPerThread), recipient, JavaMailUtil::sendMail);
+
+		run("session per mail", threads, mailsPerThread, recipient, MailBenchmark::sendUnpooled);
+		run("pooled transport", threads, mailsPerThread, recipient, JavaMailUtil::sendMail);
+
+		JavaMailUtil.shutdown();
+	}
+
+	private static void run(String name, int threads, int mailsPerThread, String recipient, Sender sender)
+			throws InterruptedException {
+		AtomicInteger sent = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		List<Thread> workers = new ArrayList<Thread>();
+
+		String html = "<html><body><p>Mail benchmark</p></body></html>";
+
+		long start = System.nanoTime();
+
+		for (int t = 0; t < threads; t++) {
+			Thread worker = new Thread(() -> {
+				for (int i = 0; i < mailsPerThread; i++) {
+					try {
+						sender.send(recipient, "Mail benchmark " + i, html);
+						sent.incrementAndGet();
+					} catch (MessagingException e) {
+						failed.incrementAndGet();
+					}
+				}
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		for (Thread worker : workers)
+			worker.join();
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-17s %6d mails in %6.2f s  %8.1f mails/s  (%d failed)", name, sent.get(),
+				seconds, sent.get() / seconds, failed.get()));
+	}
+
+	/*
+	 * The old path: settings, Session and connection built for every mail.
+	 */
+	private static void sendUnpooled(String recipient, String subject, String htmlTextMessage)
+			throws MessagingException {
+		ResourceBundle rb = ResourceBundle.getBundle("application");
+
+		Properties properties = new Properties();
+		properties.put("mail.smtp.host", DBUtil.getString(rb, "mailer.host", "smtp.gmail.com"));
+		properties.put("mail.transport.protocol", "smtp");
+		properties.put("mail.smtp.auth", DBUtil.getString(rb, "mailer.auth", "true"));
+		properties.put("mail.smtp.starttls.enable", DBUtil.getString(rb, "mailer.starttls", "true"));
+		properties.put("mail.smtp.port", DBUtil.getString(rb, "mailer.port", "587"));
+
+		String emailId = rb.getString("mailer.email");
+		String passWord = rb.getString("mailer.password");
+
+		Session session = Session.getInstance(properties, new Authenticator() {
+
+			@Override
+			protected PasswordAuthentication getPasswordAuthentication() {
+				return new PasswordAuthentication(emailId, passWord);
+			}
+
+		});
+
+		Message message = new MimeMessage(session);
+		message.setFrom(new InternetAddress(emailId));
+		message.setRecipient(Message.RecipientType.TO, new InternetAddress(recipient));
+		message.setSubject(subject);
+		message.setContent(htmlTextMessage, "text/html");
+
+		Transport.send(message);
+	}
+}
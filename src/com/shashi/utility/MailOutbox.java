@@ -0,0 +1,487 @@
+package com.shashi.utility;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ResourceBundle;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import jakarta.mail.MessagingException;
+
+/**
+ * Outgoing mails are saved to the mail_outbox table and sent by a small
+ * worker pool, so the request that triggers a mail only pays for one insert
+ * and an SMTP outage does not stall it.
+ *
+ * A dispatcher thread claims due rows (next_attempt <= now) for
+ * mail.outbox.leaseMillis and hands them to the workers; it is woken by every
+ * new mail and otherwise polls every mail.outbox.pollIntervalMillis, which
+ * also picks up mails left over from a previous run or another server. A
+ * sent mail is deleted. A failed one is retried after
+ * mail.outbox.retryBaseMillis, doubled on every attempt up to
+ * mail.outbox.retryMaxMillis; after mail.outbox.maxAttempts it stays in the
+ * table with next_attempt null and its last error.
+ *
+ * If the mail cannot be saved (database down) it is kept in memory and
+ * retried the same way, but is lost if the application stops.
+ */
+public class MailOutbox {
+
+	private static final ResourceBundle RB = ResourceBundle.getBundle("application");
+
+	private static final int WORKERS = Math.max(1, DBUtil.getInt(RB, "mail.outbox.workers", 4));
+	private static final int MAX_ATTEMPTS = Math.max(1, DBUtil.getInt(RB, "mail.outbox.maxAttempts", 8));
+	private static final long RETRY_BASE_MILLIS = DBUtil.getInt(RB, "mail.outbox.retryBaseMillis", 5000);
+	private static final long RETRY_MAX_MILLIS = DBUtil.getInt(RB, "mail.outbox.retryMaxMillis", 3600000);
+	private static final long POLL_INTERVAL_MILLIS = Math.max(100,
+			DBUtil.getInt(RB, "mail.outbox.pollIntervalMillis", 2000));
+	private static final long LEASE_MILLIS = DBUtil.getInt(RB, "mail.outbox.leaseMillis", 120000);
+
+	private static final int MAX_ERROR_LENGTH = 255;
+
+	/* one thread: claims due rows and schedules in-memory retries */
+	private static final ScheduledExecutorService DISPATCHER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "mail-outbox-dispatcher");
+		t.setDaemon(true);
+		return t;
+	});
+
+	private static final ThreadPoolExecutor SENDERS = new ThreadPoolExecutor(WORKERS, WORKERS, 0,
+			TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(WORKERS * 4), r -> {
+				Thread t = new Thread(r, "mail-outbox-sender");
+				t.setDaemon(true);
+				return t;
+			});
+
+	private static final AtomicBoolean POLL_PENDING = new AtomicBoolean();
+	private static final AtomicInteger IN_MEMORY = new AtomicInteger();
+
+	private static final LongAdder QUEUED = new LongAdder();
+	private static final LongAdder SENT = new LongAdder();
+	private static final LongAdder FAILED_ATTEMPTS = new LongAdder();
+	private static final LongAdder GAVE_UP = new LongAdder();
+
+	private static volatile boolean stopped;
+
+	static {
+		DISPATCHER.scheduleWithFixedDelay(MailOutbox::poll, POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private static final class Mail {
+		/* 0 if the mail could not be saved */
+		final long id;
+		final String recipient;
+		final String subject;
+		final String htmlTextMessage;
+		int attempts;
+
+		Mail(long id, String recipient, String subject, String htmlTextMessage, int attempts) {
+			this.id = id;
+			this.recipient = recipient;
+			this.subject = subject;
+			this.htmlTextMessage = htmlTextMessage;
+			this.attempts = attempts;
+		}
+	}
+
+	/**
+	 * A mail for {@link MailOutbox#sendAll}.
+	 */
+	public static final class OutgoingMail {
+		final String recipient;
+		final String subject;
+		final String htmlTextMessage;
+
+		public OutgoingMail(String recipient, String subject, String htmlTextMessage) {
+			this.recipient = recipient;
+			this.subject = subject;
+			this.htmlTextMessage = htmlTextMessage;
+		}
+	}
+
+	/**
+	 * Saves the mail for sending and returns without waiting for it.
+	 *
+	 * @return false only if the outbox is shut down
+	 */
+	public static boolean send(String recipient, String subject, String htmlTextMessage) {
+		return sendAll(Collections.singletonList(new OutgoingMail(recipient, subject, htmlTextMessage)));
+	}
+
+	/**
+	 * Saves the mails with one batched insert and returns without waiting for
+	 * them.
+	 *
+	 * @return false only if the outbox is shut down
+	 */
+	public static boolean sendAll(List<OutgoingMail> mails) {
+		if (stopped)
+			return false;
+		if (mails.isEmpty())
+			return true;
+
+		QUEUED.add(mails.size());
+
+		boolean saved = false;
+
+		Connection con = DBUtil.provideConnection();
+
+		PreparedStatement ps = null;
+
+		try {
+			if (con == null)
+				throw new SQLException("no database connection");
+
+			ps = con.prepareStatement(
+					"insert into mail_outbox(recipient, subject, body, attempts, next_attempt, created) values(?,?,?,0,now(3),now(3))");
+
+			for (OutgoingMail mail : mails) {
+				ps.setString(1, mail.recipient);
+				ps.setString(2, mail.subject);
+				ps.setString(3, mail.htmlTextMessage);
+				ps.addBatch();
+			}
+
+			ps.executeBatch();
+			saved = true;
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+
+		if (saved) {
+			wake();
+		} else {
+			for (OutgoingMail mail : mails) {
+				IN_MEMORY.incrementAndGet();
+				submit(new Mail(0, mail.recipient, mail.subject, mail.htmlTextMessage, 0));
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Sends mails left in the table by a previous run without waiting for the
+	 * first poll.
+	 */
+	public static void start() {
+		wake();
+	}
+
+	/**
+	 * Stops claiming mails and gives the ones being sent a few seconds to go
+	 * out; the rest stay in the table for the next start.
+	 */
+	public static void shutdown() {
+		stopped = true;
+		DISPATCHER.shutdownNow();
+		SENDERS.shutdown();
+		try {
+			SENDERS.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		JavaMailUtil.shutdown();
+		if (IN_MEMORY.get() > 0)
+			System.out.println("Mail Outbox: " + IN_MEMORY.get() + " unsaved mail(s) not sent");
+	}
+
+	private static void wake() {
+		if (stopped || !POLL_PENDING.compareAndSet(false, true))
+			return;
+		try {
+			DISPATCHER.execute(MailOutbox::poll);
+		} catch (RejectedExecutionException e) {
+			POLL_PENDING.set(false);
+		}
+	}
+
+	/*
+	 * Runs on the dispatcher: claims as many due mails as the workers have
+	 * room for.
+	 */
+	private static void poll() {
+		POLL_PENDING.set(false);
+
+		int room;
+		while (!stopped && (room = SENDERS.getQueue().remainingCapacity()) > 0) {
+			List<Mail> mails = claim(room);
+			for (Mail mail : mails)
+				submit(mail);
+			if (mails.size() < room)
+				break;
+		}
+	}
+
+	private static List<Mail> claim(int limit) {
+		List<Mail> mails = new ArrayList<Mail>();
+
+		Connection con = DBUtil.provideConnection();
+		if (con == null)
+			return mails;
+
+		PreparedStatement ps = null;
+		PreparedStatement ps2 = null;
+		ResultSet rs = null;
+
+		try {
+			con.setAutoCommit(false);
+
+			// skip locked: other servers claim other rows at the same time
+			ps = con.prepareStatement("select id, recipient, subject, body, attempts from mail_outbox"
+					+ " where next_attempt <= now(3) order by next_attempt limit ? for update skip locked");
+			ps.setInt(1, limit);
+
+			rs = ps.executeQuery();
+
+			while (rs.next())
+				mails.add(new Mail(rs.getLong("id"), rs.getString("recipient"), rs.getString("subject"),
+						rs.getString("body"), rs.getInt("attempts")));
+
+			if (!mails.isEmpty()) {
+				// the lease: if this server dies before the mail is sent,
+				// it becomes due again once the lease runs out
+				ps2 = con.prepareStatement(
+						"update mail_outbox set next_attempt=date_add(now(3), interval ? microsecond) where id=?");
+				for (Mail mail : mails) {
+					ps2.setLong(1, LEASE_MILLIS * 1000);
+					ps2.setLong(2, mail.id);
+					ps2.addBatch();
+				}
+				ps2.executeBatch();
+			}
+
+			con.commit();
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+			mails.clear();
+			try {
+				con.rollback();
+			} catch (SQLException e1) {
+				e1.printStackTrace();
+			}
+		}
+
+		try {
+			con.setAutoCommit(true);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(ps2);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		return mails;
+	}
+
+	private static void submit(Mail mail) {
+		try {
+			SENDERS.execute(() -> deliver(mail));
+		} catch (RejectedExecutionException e) {
+			// workers busy: saved mails are claimed again when their lease
+			// runs out, unsaved ones wait for a free worker
+			if (mail.id == 0)
+				retryLater(mail, POLL_INTERVAL_MILLIS);
+		}
+	}
+
+	private static void deliver(Mail mail) {
+		String error = null;
+		try {
+			JavaMailUtil.sendMail(mail.recipient, mail.subject, mail.htmlTextMessage);
+		} catch (MessagingException | RuntimeException e) {
+			error = String.valueOf(e.getMessage());
+			e.printStackTrace();
+		}
+
+		if (error == null) {
+			SENT.increment();
+			if (mail.id == 0)
+				IN_MEMORY.decrementAndGet();
+			else
+				delete(mail.id);
+			return;
+		}
+
+		FAILED_ATTEMPTS.increment();
+		mail.attempts++;
+
+		if (mail.attempts >= MAX_ATTEMPTS) {
+			GAVE_UP.increment();
+			System.out.println("Mail to " + mail.recipient + " failed " + mail.attempts + " times, giving up: " + error);
+			if (mail.id == 0)
+				IN_MEMORY.decrementAndGet();
+			else
+				reschedule(mail, -1, error);
+			return;
+		}
+
+		long delay = retryDelay(mail.attempts);
+		if (mail.id == 0)
+			retryLater(mail, delay);
+		else
+			reschedule(mail, delay, error);
+	}
+
+	/**
+	 * @return the wait before the next attempt after the given number of
+	 *         failed ones: retryBaseMillis, doubled every attempt, at most
+	 *         retryMaxMillis
+	 */
+	static long retryDelay(int attempts) {
+		int doublings = Math.min(attempts - 1, 30);
+		return Math.min(RETRY_MAX_MILLIS, RETRY_BASE_MILLIS << doublings);
+	}
+
+	private static void retryLater(Mail mail, long delay) {
+		if (stopped)
+			return;
+		try {
+			DISPATCHER.schedule(() -> submit(mail), delay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			// shutting down
+		}
+	}
+
+	private static void delete(long id) {
+		Connection con = DBUtil.provideConnection();
+		if (con == null)
+			return;
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement("delete from mail_outbox where id=?");
+			ps.setLong(1, id);
+			ps.executeUpdate();
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+	}
+
+	/*
+	 * delay < 0: no more attempts, next_attempt is set to null.
+	 */
+	private static void reschedule(Mail mail, long delay, String error) {
+		Connection con = DBUtil.provideConnection();
+		if (con == null)
+			return;
+
+		PreparedStatement ps = null;
+
+		try {
+			ps = con.prepareStatement("update mail_outbox set attempts=?, last_error=?, next_attempt="
+					+ (delay < 0 ? "null" : "date_add(now(3), interval ? microsecond)") + " where id=?");
+
+			int index = 1;
+			ps.setInt(index++, mail.attempts);
+			ps.setString(index++, error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+			if (delay >= 0)
+				ps.setLong(index++, delay * 1000);
+			ps.setLong(index, mail.id);
+
+			ps.executeUpdate();
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(con);
+	}
+
+	/**
+	 * @return the number of mails waiting to be sent or being sent, read from
+	 *         the table, plus the unsaved ones of this server; -1 if the table
+	 *         cannot be read
+	 */
+	public static int getQueueDepth() {
+		int depth = -1;
+
+		Connection con = DBUtil.provideConnection();
+		if (con == null)
+			return depth;
+
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+
+		try {
+			ps = con.prepareStatement("select count(*) from mail_outbox where next_attempt is not null");
+			rs = ps.executeQuery();
+
+			if (rs.next())
+				depth = rs.getInt(1) + IN_MEMORY.get();
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+
+		DBUtil.closeConnection(ps);
+		DBUtil.closeConnection(rs);
+		DBUtil.closeConnection(con);
+
+		return depth;
+	}
+
+	/**
+	 * @return the mails of this server handed to the outbox since start
+	 */
+	public static long getQueuedCount() {
+		return QUEUED.sum();
+	}
+
+	public static long getSentCount() {
+		return SENT.sum();
+	}
+
+	/**
+	 * @return the failed send attempts, retried or not
+	 */
+	public static long getFailedAttemptCount() {
+		return FAILED_ATTEMPTS.sum();
+	}
+
+	/**
+	 * @return the mails given up on after mail.outbox.maxAttempts
+	 */
+	public static long getGaveUpCount() {
+		return GAVE_UP.sum();
+	}
+
+	/**
+	 * @return the mails of this server being sent or waiting for a worker
+	 */
+	public static int getActiveCount() {
+		return SENDERS.getActiveCount() + SENDERS.getQueue().size();
+	}
+
+	public static String getStats() {
+		return "MailOutbox[workers=" + WORKERS + ", active=" + getActiveCount() + ", unsaved=" + IN_MEMORY.get()
+				+ ", queued=" + getQueuedCount() + ", sent=" + getSentCount() + ", failedAttempts="
+				+ getFailedAttemptCount() + ", gaveUp=" + getGaveUpCount() + "]";
+	}
+}
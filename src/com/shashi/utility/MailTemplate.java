@@ -0,0 +1,191 @@
+package com.shashi.utility;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An HTML mail template from com/shashi/utility/mail, parsed once into the
+ * literal text between its placeholders. A placeholder is {{name}} for text,
+ * which is HTML escaped, or {{name:decimal}} for a number. The names are the
+ * parameters given to {@link #load}, and {@link #render} takes the values in
+ * that order.
+ *
+ * Rendering appends into a StringBuilder kept per thread and sized for the
+ * template, so a mail costs one String and no intermediate copies.
+ */
+public class MailTemplate {
+
+	private static final byte TEXT = 0;
+	private static final byte DECIMAL = 1;
+
+	/* builders that grew past this are not kept */
+	private static final int MAX_KEPT_CAPACITY = 64 * 1024;
+
+	private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+	private final String name;
+	private final String[] parameters;
+
+	/* literals[i] comes before placeholder i, the last one after all */
+	private final String[] literals;
+	private final int[] slots;
+	private final byte[] types;
+	private final int literalLength;
+
+	private MailTemplate(String name, String[] parameters, String[] literals, int[] slots, byte[] types) {
+		this.name = name;
+		this.parameters = parameters;
+		this.literals = literals;
+		this.slots = slots;
+		this.types = types;
+
+		int length = 0;
+		for (String literal : literals)
+			length += literal.length();
+		this.literalLength = length;
+	}
+
+	/**
+	 * Reads and parses com/shashi/utility/mail/{name}.
+	 *
+	 * @throws IllegalArgumentException if the template is missing or uses a
+	 *                                  placeholder that is not a parameter
+	 */
+	public static MailTemplate load(String name, String... parameters) {
+		InputStream in = MailTemplate.class.getResourceAsStream("mail/" + name);
+		if (in == null)
+			throw new IllegalArgumentException("Mail template not found: " + name);
+
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				out.write(buffer, 0, n);
+			return parse(name, new String(out.toByteArray(), StandardCharsets.UTF_8), parameters);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Mail template not readable: " + name, e);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	static MailTemplate parse(String name, String source, String... parameters) {
+		List<String> literals = new ArrayList<String>();
+		List<Integer> slots = new ArrayList<Integer>();
+		List<Byte> types = new ArrayList<Byte>();
+
+		int from = 0;
+		int open;
+		while ((open = source.indexOf("{{", from)) >= 0) {
+			int close = source.indexOf("}}", open + 2);
+			if (close < 0)
+				throw new IllegalArgumentException(name + ": unclosed placeholder at " + open);
+
+			String placeholder = source.substring(open + 2, close).trim();
+			byte type = TEXT;
+			int colon = placeholder.indexOf(':');
+			if (colon >= 0) {
+				String typeName = placeholder.substring(colon + 1).trim();
+				if ("decimal".equals(typeName))
+					type = DECIMAL;
+				else if (!"text".equals(typeName))
+					throw new IllegalArgumentException(name + ": unknown placeholder type " + typeName);
+				placeholder = placeholder.substring(0, colon).trim();
+			}
+
+			int slot = Arrays.asList(parameters).indexOf(placeholder);
+			if (slot < 0)
+				throw new IllegalArgumentException(name + ": unknown placeholder " + placeholder);
+
+			literals.add(source.substring(from, open));
+			slots.add(slot);
+			types.add(type);
+			from = close + 2;
+		}
+		literals.add(source.substring(from));
+
+		int[] slotArray = new int[slots.size()];
+		byte[] typeArray = new byte[types.size()];
+		for (int i = 0; i < slotArray.length; i++) {
+			slotArray[i] = slots.get(i);
+			typeArray[i] = types.get(i);
+		}
+
+		return new MailTemplate(name, parameters.clone(), literals.toArray(new String[0]), slotArray, typeArray);
+	}
+
+	/**
+	 * @param values one per parameter, in the order given to {@link #load}; a
+	 *               decimal placeholder takes a Number, null renders as empty
+	 */
+	public String render(Object... values) {
+		if (values.length != parameters.length)
+			throw new IllegalArgumentException(
+					name + " takes " + parameters.length + " values, got " + values.length);
+
+		StringBuilder sb = BUILDER.get();
+		sb.setLength(0);
+		sb.ensureCapacity(literalLength + 32 * slots.length);
+
+		sb.append(literals[0]);
+		for (int i = 0; i < slots.length; i++) {
+			Object value = values[slots[i]];
+			if (value != null) {
+				if (types[i] == DECIMAL)
+					sb.append(((Number) value).doubleValue());
+				else
+					appendEscaped(sb, value.toString());
+			}
+			sb.append(literals[i + 1]);
+		}
+
+		String html = sb.toString();
+
+		if (sb.capacity() > MAX_KEPT_CAPACITY)
+			BUILDER.remove();
+		else
+			sb.setLength(0);
+
+		return html;
+	}
+
+	private static void appendEscaped(StringBuilder sb, String text) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			case '\'':
+				sb.append("&#39;");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "MailTemplate[" + name + ", " + slots.length + " placeholders]";
+	}
+}
@@ -0,0 +1,58 @@
+package com.shashi.utility;
+
+/**
+ * Compares the cost of building the order placed mail by string
+ * concatenation, as MailMessage used to, against rendering its MailTemplate.
+ * Nothing is sent.
+ *
+ * <pre>
+ * java -cp WEB-INF/classes:WEB-INF/lib/* com.shashi.utility.MailTemplateBenchmark [iterations] [rounds]
+ * </pre>
+ *
+ * The first rounds warm up the JIT; compare the later ones.
+ */
+public class MailTemplateBenchmark {
+
+	/* keeps the JIT from dropping the rendered mails */
+	private static long sink;
+
+	public static void main(String[] args) {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+		MailTemplate template = MailTemplate.load("transaction_success.html", "name", "transId", "transAmount");
+
+		for (int round = 1; round <= rounds; round++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < iterations; i++)
+				sink += concatenate("Customer", "TR" + (i & 1023), 1000 + i).length();
+			long concatenated = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < iterations; i++)
+				sink += template.render("Customer", "TR" + (i & 1023), 1000.0 + i).length();
+			long rendered = System.nanoTime() - start;
+
+			System.out.println(String.format("round %d  concatenation %7.1f ns/mail  template %7.1f ns/mail", round,
+					(double) concatenated / iterations, (double) rendered / iterations));
+		}
+		System.out.println("(" + sink + ")");
+	}
+
+	/*
+	 * MailMessage.transactionSuccess before the templates.
+	 */
+	private static String concatenate(String name, String transId, double transAmount) {
+		return "<html>" + "  <body>" + "    <p>" + "      Hey " + name + ",<br/><br/>"
+				+ "      We are glad that you shop with Ellison Electronics!" + "      <br/><br/>"
+				+ "      Your order has been placed successfully and under process to be shipped."
+				+ "<br/><h6>Please Note that this is a demo projet Email and you have not made any real transaction with us till now!</h6>"
+				+ "      <br/>" + "      Here is Your Transaction Details:<br/>" + "      <br/>"
+				+ "      <font style=\"color:red;font-weight:bold;\">Order Id:</font>"
+				+ "      <font style=\"color:green;font-weight:bold;\">" + transId + "</font><br/>" + "      <br/>"
+				+ "      <font style=\"color:red;font-weight:bold;\">Amount Paid:</font> <font style=\"color:green;font-weight:bold;\">"
+				+ transAmount + "</font>" + "      <br/><br/>" + "      Thanks for shopping with us!<br/><br/>"
+				+ "      Come Shop Again! <br/<br/> <font style=\"color:green;font-weight:bold;\">Ellison Electronics.</font>"
+				+ "    </p>" + "    " + "  </body>" + "</html>";
+	}
+}
@@ -0,0 +1,207 @@
+package com.shashi.utility;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LRU cache of prepared statements keyed by SQL text, owned by one pooled
+ * connection.
+ *
+ * Callers keep using the plain prepareStatement / close pattern: close() on the
+ * returned statement clears its parameters and hands it back to the cache
+ * instead of closing the server side statement. A statement is only ever lent
+ * to one caller at a time; if the same SQL is prepared again while the cached
+ * one is still open (nested service calls), the second caller gets an uncached
+ * statement.
+ */
+public class StatementCache {
+
+	private final Connection physical;
+	private final Connection owner;
+	private final int maxSize;
+	private final LinkedHashMap<String, Entry> entries;
+
+	private long hits;
+	private long misses;
+
+	public StatementCache(Connection physical, Connection owner, int maxSize) {
+		this.physical = physical;
+		this.owner = owner;
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() <= StatementCache.this.maxSize)
+					return false;
+				Entry entry = eldest.getValue();
+				entry.evicted = true;
+				if (entry.handle == null)
+					closeQuietly(entry.statement);
+				return true;
+			}
+		};
+	}
+
+	public synchronized PreparedStatement prepare(String sql) throws SQLException {
+		Entry entry = entries.get(sql);
+
+		if (entry != null && entry.handle == null) {
+			hits++;
+			return lend(entry);
+		}
+
+		misses++;
+		PreparedStatement statement = physical.prepareStatement(sql);
+
+		if (entry != null) {
+			// already lent out, this caller gets a private statement
+			return statement;
+		}
+
+		entry = new Entry(sql, statement);
+		entries.put(sql, entry);
+		return lend(entry);
+	}
+
+	private PreparedStatement lend(Entry entry) {
+		Handle handle = new Handle(entry);
+		entry.handle = handle;
+		return handle.proxy;
+	}
+
+	private synchronized void giveBack(Entry entry) {
+		entry.handle = null;
+
+		if (entry.evicted) {
+			closeQuietly(entry.statement);
+			return;
+		}
+
+		try {
+			ResultSet rs = entry.statement.getResultSet();
+			if (rs != null)
+				rs.close();
+			entry.statement.clearParameters();
+			entry.statement.clearBatch();
+		} catch (SQLException e) {
+			entries.remove(entry.sql);
+			closeQuietly(entry.statement);
+		}
+	}
+
+	/**
+	 * Called when the owning connection goes back to the pool: statements the
+	 * caller forgot to close are taken back so they can be reused.
+	 */
+	public synchronized void reclaim() {
+		List<Entry> lent = new ArrayList<Entry>();
+		for (Entry entry : entries.values()) {
+			if (entry.handle != null)
+				lent.add(entry);
+		}
+		for (Entry entry : lent) {
+			entry.handle.closed = true;
+			giveBack(entry);
+		}
+	}
+
+	public synchronized void closeAll() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next();
+			if (entry.handle != null)
+				entry.handle.closed = true;
+			closeQuietly(entry.statement);
+			it.remove();
+		}
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			// statement is being discarded anyway
+		}
+	}
+
+	private static final class Entry {
+		final String sql;
+		final PreparedStatement statement;
+		Handle handle;
+		boolean evicted;
+
+		Entry(String sql, PreparedStatement statement) {
+			this.sql = sql;
+			this.statement = statement;
+		}
+	}
+
+	private final class Handle implements InvocationHandler {
+		final Entry entry;
+		final PreparedStatement proxy;
+		volatile boolean closed;
+
+		Handle(Entry entry) {
+			this.entry = entry;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+
+			if ("close".equals(name)) {
+				if (!closed) {
+					closed = true;
+					giveBack(entry);
+				}
+				return null;
+			}
+			if ("isClosed".equals(name))
+				return closed;
+			if ("getConnection".equals(name))
+				return owner;
+			if ("equals".equals(name))
+				return proxy == args[0];
+			if ("hashCode".equals(name))
+				return System.identityHashCode(proxy);
+			if ("toString".equals(name))
+				return "Cached" + entry.statement;
+
+			if (closed)
+				throw new SQLException("Statement has already been closed");
+
+			try {
+				return method.invoke(entry.statement, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
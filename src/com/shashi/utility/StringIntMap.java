@@ -0,0 +1,117 @@
+package com.shashi.utility;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Map from String keys to int values without boxing: keys and values sit in
+ * two parallel arrays, probed linearly from the key's hash. Missing keys read
+ * as 0. Not thread safe; meant to be filled once and read by one request.
+ */
+public class StringIntMap {
+
+	private String[] keys;
+	private int[] values;
+	private int size;
+
+	public StringIntMap() {
+		this(8);
+	}
+
+	public StringIntMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1) << 1);
+		keys = new String[capacity];
+		values = new int[capacity];
+	}
+
+	/**
+	 * @return the value of the key, or 0 if there is none
+	 */
+	public int get(String key) {
+		int i = indexOf(key);
+		return keys[i] == null ? 0 : values[i];
+	}
+
+	public boolean containsKey(String key) {
+		return keys[indexOf(key)] != null;
+	}
+
+	public void put(String key, int value) {
+		int i = indexOf(key);
+		if (keys[i] == null) {
+			keys[i] = key;
+			values[i] = value;
+			if (++size * 2 > keys.length)
+				grow();
+		} else {
+			values[i] = value;
+		}
+	}
+
+	/**
+	 * Adds delta to the key's value, starting from 0.
+	 */
+	public void add(String key, int delta) {
+		int i = indexOf(key);
+		if (keys[i] == null)
+			put(key, delta);
+		else
+			values[i] += delta;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the sum of all values
+	 */
+	public int sum() {
+		int total = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null)
+				total += values[i];
+		}
+		return total;
+	}
+
+	public void forEach(ObjIntConsumer<String> action) {
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != null)
+				action.accept(keys[i], values[i]);
+		}
+	}
+
+	private int indexOf(String key) {
+		int mask = keys.length - 1;
+		int h = key.hashCode();
+		int i = (h ^ (h >>> 16)) & mask;
+		while (keys[i] != null && !keys[i].equals(key))
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private void grow() {
+		String[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new String[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int j = indexOf(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		forEach((key, value) -> sb.append(sb.length() > 1 ? ", " : "").append(key).append('=').append(value));
+		return sb.append('}').toString();
+	}
+}